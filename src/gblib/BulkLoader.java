@@ -0,0 +1,519 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import static gblib.Util.invariant;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Load delimited (CSV/TSV) file into table of Model.
+ * <p>
+ * The file is read in chunks of lines; chunks are parsed (converted using
+ * column types of Model) in parallel, then inserted by N writer threads, each
+ * with its own connection and batched insert statement. A chunk is one
+ * transaction. A bounded queue between parse and write provides
+ * backpressure.
+ * <p>
+ * With a checkpoint file, the number of (leading) data lines committed is
+ * recorded; a subsequent load of same file resumes after those lines.
+ *
+ * @author gburdell
+ */
+public class BulkLoader {
+
+    public static BulkLoader create(final Model model, final Model.IConnection conn) {
+        return new BulkLoader(model, conn);
+    }
+
+    private BulkLoader(final Model model, final Model.IConnection conn) {
+        m_model = model;
+        m_conn = conn;
+    }
+
+    public BulkLoader setWriters(final int n) {
+        invariant(0 < n);
+        m_nWriters = n;
+        return this;
+    }
+
+    public BulkLoader setParsers(final int n) {
+        invariant(0 < n);
+        m_nParsers = n;
+        return this;
+    }
+
+    /**
+     * Set rows per chunk (and thus per batch/transaction).
+     *
+     * @param n rows per chunk.
+     * @return this loader.
+     */
+    public BulkLoader setChunkSize(final int n) {
+        invariant(0 < n);
+        m_chunkSize = n;
+        return this;
+    }
+
+    /**
+     * Set max parsed (or in-parse) chunks waiting for writers.
+     *
+     * @param n max pending chunks.
+     * @return this loader.
+     */
+    public BulkLoader setMaxPendingChunks(final int n) {
+        invariant(0 < n);
+        m_maxPending = n;
+        return this;
+    }
+
+    public BulkLoader setDelimiter(final char delim) {
+        m_delim = delim;
+        return this;
+    }
+
+    /**
+     * Set whether first line has column names (each of
+     * Model.getColumnNames(), in any order; an ID column is ignored).
+     * Without header, fields are in order of Model.getColumnNames().
+     *
+     * @param hasHeader true if header line.
+     * @return this loader.
+     */
+    public BulkLoader setHasHeader(final boolean hasHeader) {
+        m_hasHeader = hasHeader;
+        return this;
+    }
+
+    public BulkLoader setCheckpoint(final Path checkpoint) {
+        m_checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Load file.
+     *
+     * @param file delimited file.
+     * @return number of rows loaded (by this call).
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long load(final Path file) throws IOException, SQLException {
+        m_rowCnt.set(0);
+        m_error.set(null);
+        m_elapsed = -1;
+        m_timer = new Timer();
+        final long skip = readCheckpoint();
+        m_done = new BitSet();
+        m_doneChunks = 0;
+        m_skipLines = skip;
+        ExecutorService parsers = null, writers = null;
+        final BlockingQueue<Future<Chunk>> pending = new ArrayBlockingQueue<>(m_maxPending);
+        try (BufferedReader rdr = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final String colNms[] = m_model.getColumnNames().toArray(new String[0]);
+            final int fields[] = getFields(file, rdr, colNms);
+            final int colTypes[] = new int[colNms.length];
+            for (int i = 0; i < colNms.length; i++) {
+                colTypes[i] = m_model.getColType(colNms[i]);
+            }
+            parsers = Executors.newFixedThreadPool(m_nParsers);
+            writers = Executors.newFixedThreadPool(m_nWriters);
+            final List<Future<?>> writerDone = new ArrayList<>(m_nWriters);
+            for (int i = 0; i < m_nWriters; i++) {
+                writerDone.add(writers.submit(() -> write(colNms, pending)));
+            }
+            for (long line = 0; line < skip && null != rdr.readLine(); line++) {
+                //skip committed lines
+            }
+            List<String> lines = new ArrayList<>(m_chunkSize);
+            String line;
+            int seq = 0, lineCnt = 0;
+            boolean ok = true;
+            while (ok && (null != (line = rdr.readLine()))) {
+                lineCnt++; //include empty lines: checkpoint counts physical lines
+                if (line.isEmpty()) {
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() >= m_chunkSize) {
+                    ok = put(pending, parse(parsers, seq++, lineCnt, lines, fields, colTypes));
+                    lines = new ArrayList<>(m_chunkSize);
+                    lineCnt = 0;
+                }
+            }
+            if (ok && (!lines.isEmpty() || (0 < lineCnt))) {
+                ok = put(pending, parse(parsers, seq, lineCnt, lines, fields, colTypes));
+            }
+            for (int i = 0; ok && (i < m_nWriters); i++) {
+                ok = put(pending, CompletableFuture.completedFuture(END));
+            }
+            for (int i = 0; ok && (i < writerDone.size()); i++) {
+                final Future<?> done = writerDone.get(i);
+                try {
+                    done.get();
+                } catch (ExecutionException ex) {
+                    m_error.compareAndSet(null, ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    m_error.compareAndSet(null, ex);
+                }
+            }
+        } finally {
+            if (null != parsers) {
+                parsers.shutdownNow();
+            }
+            if (null != writers) {
+                writers.shutdownNow();
+            }
+            m_elapsed = m_timer.elapsed();
+        }
+        final Throwable error = m_error.get();
+        if (error instanceof SQLException) {
+            throw (SQLException) error;
+        } else if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (null != error) {
+            throw new RuntimeException(error);
+        }
+        if (null != m_checkpoint) {
+            Files.deleteIfExists(m_checkpoint);
+        }
+        return m_rowCnt.get();
+    }
+
+    /**
+     * Get rows loaded (so far).
+     *
+     * @return rows loaded.
+     */
+    public long getRowCount() {
+        return m_rowCnt.get();
+    }
+
+    /**
+     * Get load rate (so far).
+     *
+     * @return rows per second.
+     */
+    public double getRowsPerSecond() {
+        final Timer timer = m_timer;
+        final long elapsed = (0 <= m_elapsed) ? m_elapsed : ((null != timer) ? timer.elapsed() : 0);
+        return (0 < elapsed) ? (1000.0 * m_rowCnt.get() / elapsed) : 0.0;
+    }
+
+    /**
+     * Map fields (by header, if any) to insert columns. The header must name
+     * each of colNms exactly once; an ID column is allowed (and ignored),
+     * since IDs are generated on insert.
+     *
+     * @param colNms insert columns (Model.getColumnNames()).
+     * @return insert column index by field (-1 if ignored).
+     * @throws IOException on empty file or invalid header.
+     */
+    private int[] getFields(final Path file, final BufferedReader rdr, final String colNms[]) throws IOException {
+        final Map<String, Integer> colByNm = new HashMap<>();
+        for (int i = 0; i < colNms.length; i++) {
+            colByNm.put(colNms[i].toUpperCase(), i);
+        }
+        if (!m_hasHeader) {
+            final int fields[] = new int[colNms.length];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = i;
+            }
+            return fields;
+        }
+        final String hdr = rdr.readLine();
+        if (null == hdr) {
+            throw new IOException(file + ": empty file (expected header)");
+        }
+        final List<String> toks = split(hdr, m_delim);
+        final int fields[] = new int[toks.size()];
+        final BitSet seen = new BitSet(colNms.length);
+        boolean seenId = false;
+        for (int i = 0; i < fields.length; i++) {
+            final String colNm = toks.get(i).trim().toUpperCase();
+            final Integer col = colByNm.get(colNm);
+            if ((null != col) ? seen.get(col) : (ID_COL.equals(colNm) && seenId)) {
+                throw new IOException(file + ": duplicate column '" + toks.get(i) + "' in header");
+            } else if (null != col) {
+                seen.set(col);
+                fields[i] = col;
+            } else if (ID_COL.equals(colNm)) {
+                seenId = true;
+                fields[i] = -1;
+            } else {
+                throw new IOException(file + ": unknown column '" + toks.get(i) + "' in header (table "
+                        + m_model.getTableName() + ")");
+            }
+        }
+        final int missing = seen.nextClearBit(0);
+        if (missing < colNms.length) {
+            throw new IOException(file + ": missing column '" + colNms[missing] + "' in header");
+        }
+        return fields;
+    }
+
+    /**
+     * Queue chunk for writers (blocks while queue is full).
+     *
+     * @return false if load failed (and chunk was not queued).
+     */
+    private boolean put(final BlockingQueue<Future<Chunk>> pending, final Future<Chunk> chunk) throws IOException {
+        try {
+            while (null == m_error.get()) {
+                if (pending.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+        return false;
+    }
+
+    private Future<Chunk> parse(final ExecutorService parsers, final int seq, final int lineCnt, final List<String> lines,
+            final int fields[], final int colTypes[]) {
+        return parsers.submit(() -> {
+            final Chunk chunk = new Chunk(seq, lineCnt);
+            for (String line : lines) {
+                final List<String> toks = split(line, m_delim);
+                if (toks.size() != fields.length) {
+                    throw new IOException("chunk " + seq + ": expected " + fields.length
+                            + " fields, found " + toks.size() + ": '" + line + "'");
+                }
+                final Object vals[] = new Object[colTypes.length];
+                for (int i = 0; i < fields.length; i++) {
+                    final int col = fields[i];
+                    if (0 > col) {
+                        continue;
+                    }
+                    try {
+                        vals[col] = convert(toks.get(i), colTypes[col]);
+                    } catch (RuntimeException ex) {
+                        //e.g., NumberFormatException, DateTimeParseException
+                        throw new IOException("chunk " + seq + ": invalid value '" + toks.get(i)
+                                + "' (" + ex.getMessage() + "): '" + line + "'", ex);
+                    }
+                }
+                chunk.m_rows.add(vals);
+            }
+            return chunk;
+        });
+    }
+
+    /**
+     * Convert field by column type. Done in parse stage, so that invalid
+     * values fail the chunk (and thus load()) rather than a writer.
+     */
+    private static Object convert(final String tok, final int sqlType) {
+        if (tok.isEmpty()) {
+            return (Types.LONGVARCHAR == sqlType || Types.CHAR == sqlType) ? tok : null;
+        }
+        switch (sqlType) {
+            case Types.INTEGER:
+                return Long.parseLong(tok);
+            case Types.REAL:
+                return Double.parseDouble(tok);
+            case Types.BIT:
+                return Boolean.parseBoolean(tok);
+            case Types.TIMESTAMP:
+                return Model.toTimestamp(tok);
+            default:
+                return tok;
+        }
+    }
+
+    /**
+     * Writer thread: insert chunks until END. On error, record (first) error
+     * and stop; load() then abandons remaining chunks.
+     */
+    private Void write(final String colNms[], final BlockingQueue<Future<Chunk>> pending) throws Exception {
+        try {
+            writeChunks(colNms, pending);
+        } catch (Exception ex) {
+            m_error.compareAndSet(null, ex);
+            throw ex;
+        }
+        return null;
+    }
+
+    private void writeChunks(final String colNms[], final BlockingQueue<Future<Chunk>> pending) throws Exception {
+        try (Connection conn = m_conn.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = m_model.prepareInsert(conn)) {
+                while (true) {
+                    final Chunk chunk;
+                    try {
+                        chunk = pending.take().get();
+                    } catch (ExecutionException ex) {
+                        throw (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+                    }
+                    if ((END == chunk) || (null != m_error.get())) {
+                        break;
+                    }
+                    try {
+                        for (Object vals[] : chunk.m_rows) {
+                            m_model.addInsertBatch(stmt, colNms, vals);
+                        }
+                        final long start = ModelStats.start();
+                        stmt.executeBatch();
+                        conn.commit();
+                        m_model.getStats().record(ModelStats.Phase.EXECUTE, start);
+                    } catch (SQLException ex) {
+                        conn.rollback();
+                        throw ex;
+                    }
+                    m_rowCnt.addAndGet(chunk.m_rows.size());
+                    committed(chunk);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Record committed chunk; advance checkpoint over leading committed
+     * chunks.
+     */
+    private synchronized void committed(final Chunk chunk) throws IOException {
+        m_done.set(chunk.m_seq);
+        m_lineCnts.put(chunk.m_seq, chunk.m_lineCnt);
+        boolean advanced = false;
+        while (m_done.get(m_doneChunks)) {
+            m_skipLines += m_lineCnts.remove(m_doneChunks);
+            m_doneChunks++;
+            advanced = true;
+        }
+        if (advanced && (null != m_checkpoint)) {
+            final Path tmp = m_checkpoint.resolveSibling(m_checkpoint.getFileName() + ".tmp");
+            Files.write(tmp, Long.toString(m_skipLines).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, m_checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if ((null != m_checkpoint) && Files.exists(m_checkpoint)) {
+            return Long.parseLong(new String(Files.readAllBytes(m_checkpoint), StandardCharsets.UTF_8).trim());
+        }
+        return 0;
+    }
+
+    /**
+     * Split line into fields. A field may be enclosed in double quotes (to
+     * embed delim); a double quote within quotes is doubled ("").
+     *
+     * @param line line to split.
+     * @param delim field delimiter.
+     * @return fields.
+     */
+    static List<String> split(final String line, final char delim) {
+        final List<String> toks = new ArrayList<>();
+        final int n = line.length();
+        final StringBuilder tok = new StringBuilder();
+        boolean inQuote = false;
+        for (int i = 0; i < n; i++) {
+            final char c = line.charAt(i);
+            if (inQuote) {
+                if ('"' == c) {
+                    if ((i + 1 < n) && ('"' == line.charAt(i + 1))) {
+                        tok.append(c);
+                        i++;
+                    } else {
+                        inQuote = false;
+                    }
+                } else {
+                    tok.append(c);
+                }
+            } else if ('"' == c) {
+                inQuote = true;
+            } else if (delim == c) {
+                toks.add(tok.toString());
+                tok.setLength(0);
+            } else {
+                tok.append(c);
+            }
+        }
+        toks.add(tok.toString());
+        return toks;
+    }
+
+    private static class Chunk {
+
+        private Chunk(final int seq, final int lineCnt) {
+            m_seq = seq;
+            m_lineCnt = lineCnt;
+            m_rows = new ArrayList<>();
+        }
+
+        private final int m_seq;
+        private final int m_lineCnt;
+        private final List<Object[]> m_rows;
+    }
+
+    private static final Chunk END = new Chunk(-1, 0);
+    private static final String ID_COL = "ID";
+
+    private final Model m_model;
+    private final Model.IConnection m_conn;
+    private int m_nWriters = 4;
+    private int m_nParsers = Runtime.getRuntime().availableProcessors();
+    private int m_chunkSize = 1000;
+    private int m_maxPending = 16;
+    private char m_delim = ',';
+    private boolean m_hasHeader = true;
+    private Path m_checkpoint = null;
+    private final AtomicLong m_rowCnt = new AtomicLong();
+    private final AtomicReference<Throwable> m_error = new AtomicReference<>();
+    private final Map<Integer, Integer> m_lineCnts = new HashMap<>();
+    private volatile Timer m_timer = null;
+    private volatile long m_elapsed = -1;
+    private BitSet m_done;
+    private int m_doneChunks;
+    private long m_skipLines;
+}
@@ -0,0 +1,348 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented (primitive) copy of ResultSet: no per-cell objects.
+ * Column metadata is read once. Storage by column type (family):
+ * <ul>
+ * <li>INTEGER/BIGINT/SMALLINT/TINYINT: long[]</li>
+ * <li>BIT/BOOLEAN: long[] (1 for true, else 0)</li>
+ * <li>REAL/FLOAT/DOUBLE/DECIMAL/NUMERIC: double[]</li>
+ * <li>TIMESTAMP: long[] (epoch milliseconds)</li>
+ * <li>(N)CHAR/(N)VARCHAR/LONG(N)VARCHAR: int[] codes into (per column) string
+ * dictionary</li>
+ * </ul>
+ * Column indexes are 1-based (as ResultSet).
+ *
+ * @author gburdell
+ */
+public class ColumnarResult {
+
+    /**
+     * Read (remaining) rows of ResultSet.
+     *
+     * @param rs result set.
+     * @return columnar copy.
+     * @throws SQLException
+     */
+    public static ColumnarResult read(final ResultSet rs) throws SQLException {
+        final ColumnarResult result = new ColumnarResult(rs.getMetaData());
+        while (rs.next()) {
+            result.add(rs);
+        }
+        result.trim();
+        return result;
+    }
+
+    private ColumnarResult(final ResultSetMetaData md) throws SQLException {
+        final int n = md.getColumnCount();
+        m_cols = new Column[n];
+        for (int i = 0; i < n; i++) {
+            final int sqlType = md.getColumnType(i + 1);
+            final Column col;
+            switch (sqlType) {
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.SMALLINT:
+                case Types.TINYINT:
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TIMESTAMP:
+                    col = new LongColumn(sqlType);
+                    break;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    col = new DoubleColumn(sqlType);
+                    break;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    col = new StringColumn(sqlType);
+                    break;
+                default:
+                    throw new SQLException(md.getColumnLabel(i + 1) + ": unsupported type " + sqlType);
+            }
+            m_cols[i] = col;
+            m_colByName.put(md.getColumnLabel(i + 1).toUpperCase(), i + 1);
+        }
+    }
+
+    private void add(final ResultSet rs) throws SQLException {
+        if (m_rowCnt == m_capacity) {
+            m_capacity = Math.max(16, m_capacity + (m_capacity >> 1));
+            for (Column col : m_cols) {
+                col.grow(m_capacity);
+            }
+        }
+        for (int i = 0; i < m_cols.length; i++) {
+            m_cols[i].set(rs, i + 1, m_rowCnt);
+        }
+        m_rowCnt++;
+    }
+
+    private void trim() {
+        for (Column col : m_cols) {
+            col.grow(m_rowCnt);
+            col.done();
+        }
+        m_capacity = m_rowCnt;
+    }
+
+    public int getRowCount() {
+        return m_rowCnt;
+    }
+
+    public int getColumnCount() {
+        return m_cols.length;
+    }
+
+    /**
+     * Get column index by name.
+     *
+     * @param colnm column name (case insensitive).
+     * @return column index or 0 if no such column.
+     */
+    public int getColumn(final String colnm) {
+        final Integer col = m_colByName.get(colnm.toUpperCase());
+        return (null != col) ? col : 0;
+    }
+
+    /**
+     * Get column type.
+     *
+     * @param col column index.
+     * @return sql.Types value.
+     */
+    public int getType(final int col) {
+        return m_cols[col - 1].m_sqlType;
+    }
+
+    public boolean isNull(final int row, final int col) {
+        return m_cols[col - 1].m_nulls.get(row);
+    }
+
+    /**
+     * Get integral value (BIT/BOOLEAN as 1/0, TIMESTAMP as epoch milliseconds).
+     *
+     * @param row row index (0-based).
+     * @param col column index.
+     * @return value (0 if null).
+     */
+    public long getLong(final int row, final int col) {
+        return getLongs(col)[row];
+    }
+
+    public double getDouble(final int row, final int col) {
+        return getDoubles(col)[row];
+    }
+
+    public long getEpochMillis(final int row, final int col) {
+        return getLong(row, col);
+    }
+
+    public Timestamp getTimestamp(final int row, final int col) {
+        return isNull(row, col) ? null : new Timestamp(getLong(row, col));
+    }
+
+    public String getString(final int row, final int col) {
+        final StringColumn scol = Util.downCast(m_cols[col - 1]);
+        final int code = scol.m_codes[row];
+        return (0 > code) ? null : scol.m_dict[code];
+    }
+
+    /**
+     * Get backing array of integral/TIMESTAMP column (for scans). Do not
+     * modify.
+     *
+     * @param col column index.
+     * @return values by row.
+     */
+    public long[] getLongs(final int col) {
+        return Util.<LongColumn>downCast(m_cols[col - 1]).m_vals;
+    }
+
+    public double[] getDoubles(final int col) {
+        return Util.<DoubleColumn>downCast(m_cols[col - 1]).m_vals;
+    }
+
+    /**
+     * Get dictionary codes of string column (-1 for null). Do not modify.
+     *
+     * @param col column index.
+     * @return codes by row.
+     */
+    public int[] getCodes(final int col) {
+        return Util.<StringColumn>downCast(m_cols[col - 1]).m_codes;
+    }
+
+    /**
+     * Get dictionary (distinct values) of string column, by code.
+     *
+     * @param col column index.
+     * @return dictionary.
+     */
+    public List<String> getDictionary(final int col) {
+        return Arrays.asList(Util.<StringColumn>downCast(m_cols[col - 1]).m_dict);
+    }
+
+    private static abstract class Column {
+
+        protected Column(final int sqlType) {
+            m_sqlType = sqlType;
+        }
+
+        abstract void grow(int capacity);
+
+        abstract void set(ResultSet rs, int col, int row) throws SQLException;
+
+        void done() {
+        }
+
+        protected final int m_sqlType;
+        protected final BitSet m_nulls = new BitSet();
+    }
+
+    private static class LongColumn extends Column {
+
+        private LongColumn(final int sqlType) {
+            super(sqlType);
+        }
+
+        @Override
+        void grow(final int capacity) {
+            m_vals = Arrays.copyOf(m_vals, capacity);
+        }
+
+        @Override
+        void set(final ResultSet rs, final int col, final int row) throws SQLException {
+            if (Types.TIMESTAMP == m_sqlType) {
+                final Timestamp ts = rs.getTimestamp(col);
+                if (null != ts) {
+                    m_vals[row] = ts.getTime();
+                } else {
+                    m_nulls.set(row);
+                }
+            } else if ((Types.BIT == m_sqlType) || (Types.BOOLEAN == m_sqlType)) {
+                m_vals[row] = rs.getBoolean(col) ? 1 : 0;
+                if (rs.wasNull()) {
+                    m_nulls.set(row);
+                }
+            } else {
+                m_vals[row] = rs.getLong(col);
+                if (rs.wasNull()) {
+                    m_nulls.set(row);
+                }
+            }
+        }
+
+        private long m_vals[] = new long[0];
+    }
+
+    private static class DoubleColumn extends Column {
+
+        private DoubleColumn(final int sqlType) {
+            super(sqlType);
+        }
+
+        @Override
+        void grow(final int capacity) {
+            m_vals = Arrays.copyOf(m_vals, capacity);
+        }
+
+        @Override
+        void set(final ResultSet rs, final int col, final int row) throws SQLException {
+            m_vals[row] = rs.getDouble(col);
+            if (rs.wasNull()) {
+                m_nulls.set(row);
+            }
+        }
+
+        private double m_vals[] = new double[0];
+    }
+
+    private static class StringColumn extends Column {
+
+        private StringColumn(final int sqlType) {
+            super(sqlType);
+        }
+
+        @Override
+        void grow(final int capacity) {
+            m_codes = Arrays.copyOf(m_codes, capacity);
+        }
+
+        @Override
+        void set(final ResultSet rs, final int col, final int row) throws SQLException {
+            final String s = rs.getString(col);
+            if (null == s) {
+                m_nulls.set(row);
+                m_codes[row] = -1;
+            } else {
+                Integer code = m_codeByVal.get(s);
+                if (null == code) {
+                    code = m_vals.size();
+                    m_codeByVal.put(s, code);
+                    m_vals.add(s);
+                }
+                m_codes[row] = code;
+            }
+        }
+
+        @Override
+        void done() {
+            m_dict = m_vals.toArray(new String[m_vals.size()]);
+            m_vals = null;
+            m_codeByVal = null;
+        }
+
+        private int m_codes[] = new int[0];
+        private String m_dict[];
+        private List<String> m_vals = new ArrayList<>();
+        private Map<String, Integer> m_codeByVal = new HashMap<>();
+    }
+
+    private final Column m_cols[];
+    private final Map<String, Integer> m_colByName = new HashMap<>();
+    private int m_rowCnt = 0;
+    private int m_capacity = 0;
+}
@@ -24,9 +24,17 @@
 package gblib;
 
 import static gblib.Util.invariant;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,10 +66,13 @@ public class Config extends HashMap<String, Object> {
     public Config add(final String keyVal) {
         Matcher matcher = KV_REX.matcher(keyVal.trim());
         invariant(matcher.matches());
-        String key = matcher.group(1);
-        String val = matcher.group(2);
+        super.put(matcher.group(1), toValue(matcher.group(2)));
+        return this;
+    }
+    
+    private static Object toValue(final String val) {
         Object valObj = val;
-        String valx = val.substring(2);
+        String valx = (2 <= val.length()) ? val.substring(2) : val;
         if (val.startsWith("*I")) {
             valObj = Integer.parseInt(valx);
         } else if (val.startsWith("*B")) {
@@ -69,8 +80,7 @@ public class Config extends HashMap<String, Object> {
         } else if (val.startsWith("*D")) {
             valObj = Double.parseDouble(valx);
         }
-        super.put(key, valObj);
-        return this;
+        return valObj;
     }
     
     public String getAsString(final String key) {
@@ -97,10 +107,229 @@ public class Config extends HashMap<String, Object> {
     public Config add(final String keyVals[]) {
         return add(Arrays.asList(keyVals));
     }
+    
+    /**
+     * Load configuration from file: one "key value" entry (see add) per line.
+     * Blank lines and lines starting with '#' are ignored.
+     * @param file configuration file.
+     * @return configuration.
+     * @throws IOException if file cannot be read or has invalid entry.
+     */
+    public static Config load(final Path file) throws IOException {
+        final Config config = create();
+        try (BufferedReader rdr = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lnum = 0;
+            for (String line = rdr.readLine(); null != line; line = rdr.readLine()) {
+                lnum++;
+                line = line.trim();
+                if (line.isEmpty() || ('#' == line.charAt(0))) {
+                    continue;
+                }
+                final Matcher matcher = KV_REX.matcher(line);
+                if (!matcher.matches()) {
+                    throw new IOException(file + ":" + lnum + ": expected 'key value', got '" + line + "'");
+                }
+                try {
+                    config.put(matcher.group(1), toValue(matcher.group(2)));
+                } catch (NumberFormatException ex) {
+                    throw new IOException(file + ":" + lnum + ": invalid value (" + ex.getMessage() + ")", ex);
+                }
+            }
+        }
+        return config;
+    }
 
     public boolean hasKey(final String key) {
         return super.containsKey(key);
     }
     
+    /**
+     * Get (interned) handle for key.
+     * Handles are stable across snapshots: resolve once and reuse.
+     * @param name key name.
+     * @return key handle.
+     */
+    public static Key key(final String name) {
+        return Key.stByName.computeIfAbsent(name, Key::new);
+    }
+    
+    /**
+     * Compile current entries into immutable snapshot.
+     * Subsequent changes to this config are not reflected in snapshot.
+     * @return snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+    
+    /**
+     * Interned key handle: indexes primitive slots of Snapshot.
+     */
+    public static final class Key {
+        private Key(final String name) {
+            m_name = name;
+            m_slot = stNextSlot.getAndIncrement();
+        }
+        
+        public String getName() {
+            return m_name;
+        }
+
+        @Override
+        public String toString() {
+            return m_name;
+        }
+        
+        private final String m_name;
+        private final int m_slot;
+        
+        private static final Map<String, Key> stByName = new ConcurrentHashMap<>();
+        private static final AtomicInteger stNextSlot = new AtomicInteger();
+    }
+    
+    /**
+     * Immutable, typed configuration: values are held in primitive slots
+     * indexed by Key, so reads do no hashing, casting or unboxing.
+     */
+    public static final class Snapshot {
+        private Snapshot(final Config config) {
+            final Key keys[] = new Key[config.size()];
+            int n = 0, max = -1;
+            for (String name : config.keySet()) {
+                keys[n] = key(name);
+                max = Math.max(max, keys[n++].m_slot);
+            }
+            final int len = max + 1;
+            m_types = new byte[len];
+            m_longs = new long[len];
+            m_doubles = new double[len];
+            m_booleans = new boolean[len];
+            m_objects = new Object[len];
+            for (Key k : keys) {
+                final int i = k.m_slot;
+                final Object val = config.get(k.m_name);
+                m_objects[i] = val;
+                if ((val instanceof Integer) || (val instanceof Long)) {
+                    m_types[i] = LONG;
+                    m_longs[i] = ((Number) val).longValue();
+                    m_doubles[i] = m_longs[i];
+                } else if (val instanceof Double) {
+                    m_types[i] = DOUBLE;
+                    m_doubles[i] = (Double) val;
+                } else if (val instanceof Boolean) {
+                    m_types[i] = BOOLEAN;
+                    m_booleans[i] = (Boolean) val;
+                } else {
+                    m_types[i] = OBJECT;
+                }
+            }
+        }
+        
+        /**
+         * Check if key has value (of any type).
+         * @param key key handle.
+         * @return true if key has value.
+         */
+        public boolean hasKey(final Key key) {
+            return ABSENT != type(key);
+        }
+        
+        /**
+         * Check flag.
+         * @param key key handle.
+         * @return true if key has Boolean value true; else false.
+         */
+        public boolean isTrue(final Key key) {
+            final int i = key.m_slot;
+            return (i < m_booleans.length) && m_booleans[i];
+        }
+        
+        public int getInt(final Key key) {
+            return (int) getLong(key);
+        }
+        
+        public long getLong(final Key key) {
+            check(key, LONG);
+            return m_longs[key.m_slot];
+        }
+        
+        /**
+         * Get Double (or integral value, as double).
+         * @param key key handle.
+         * @return value.
+         */
+        public double getDouble(final Key key) {
+            final byte type = type(key);
+            if ((DOUBLE != type) && (LONG != type)) {
+                check(key, DOUBLE);
+            }
+            return m_doubles[key.m_slot];
+        }
+        
+        public boolean getBoolean(final Key key) {
+            check(key, BOOLEAN);
+            return m_booleans[key.m_slot];
+        }
+        
+        public int getInt(final Key key, final int dflt) {
+            return (LONG == type(key)) ? (int) m_longs[key.m_slot] : dflt;
+        }
+        
+        public long getLong(final Key key, final long dflt) {
+            return (LONG == type(key)) ? m_longs[key.m_slot] : dflt;
+        }
+        
+        public double getDouble(final Key key, final double dflt) {
+            final byte type = type(key);
+            return ((DOUBLE == type) || (LONG == type)) ? m_doubles[key.m_slot] : dflt;
+        }
+        
+        public boolean getBoolean(final Key key, final boolean dflt) {
+            return (BOOLEAN == type(key)) ? m_booleans[key.m_slot] : dflt;
+        }
+        
+        /**
+         * Get value as string.
+         * @param key key handle.
+         * @return value as string, or null if no value.
+         */
+        public String getAsString(final Key key) {
+            final Object val = get(key);
+            return (null != val) ? val.toString() : null;
+        }
+        
+        /**
+         * Get (boxed) value.
+         * @param key key handle.
+         * @return value or null if no value.
+         */
+        public Object get(final Key key) {
+            final int i = key.m_slot;
+            return (i < m_objects.length) ? m_objects[i] : null;
+        }
+        
+        private byte type(final Key key) {
+            final int i = key.m_slot;
+            return (i < m_types.length) ? m_types[i] : ABSENT;
+        }
+        
+        private void check(final Key key, final byte type) {
+            final byte actual = type(key);
+            if (type != actual) {
+                throw new ClassCastException(key + ": "
+                        + ((ABSENT == actual) ? "no value" : ("not a " + TYPE_NAMES[type])));
+            }
+        }
+        
+        private final byte m_types[];
+        private final long m_longs[];
+        private final double m_doubles[];
+        private final boolean m_booleans[];
+        private final Object m_objects[];
+        
+        private static final byte ABSENT = 0, LONG = 1, DOUBLE = 2, BOOLEAN = 3, OBJECT = 4;
+        private static final String TYPE_NAMES[] = {"", "Integer", "Double", "Boolean", "Object"};
+    }
+    
     private static final Pattern KV_REX = Pattern.compile("(\\S+)\\s+(.*)");
 }
@@ -0,0 +1,449 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connections (from another IConnection source). A pooled
+ * Connection is returned to the pool on close(), so existing
+ * "try (Connection conn = ...)" usage (as in Model) works unchanged.
+ * <p>
+ * Each checkout is a distinct Connection: once closed, it stays closed
+ * (even after the physical connection is checked out again).
+ * <p>
+ * Each pooled connection keeps an LRU cache of PreparedStatement by SQL text
+ * (and result set type/concurrency). A cached statement is not closed by
+ * close(): it is only closed on eviction from the cache or when the connection
+ * is discarded. A statement evicted while in use is closed by its close(), or
+ * else when the connection is returned to the pool. A cached statement is handed to one user at a time: preparing
+ * the same SQL while the cached statement is in use (not yet closed) returns a
+ * new, uncached statement.
+ *
+ * @author gburdell
+ */
+public class ConnectionPool implements Model.IConnection, AutoCloseable {
+
+    public static ConnectionPool create(final Model.IConnection source, final int maxSize) {
+        return new ConnectionPool(source, maxSize);
+    }
+
+    private ConnectionPool(final Model.IConnection source, final int maxSize) {
+        Util.invariant(0 < maxSize);
+        m_source = source;
+        m_maxSize = maxSize;
+        m_permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Set maximum time a connection may sit idle before eviction.
+     *
+     * @param millis idle time (0 or less to never evict).
+     * @return this pool.
+     */
+    public ConnectionPool setMaxIdleMillis(final long millis) {
+        m_maxIdleMillis = millis;
+        return this;
+    }
+
+    /**
+     * Set timeout for Connection.isValid() check on checkout.
+     *
+     * @param secs timeout in seconds (less than 0 to skip validation).
+     * @return this pool.
+     */
+    public ConnectionPool setValidationTimeout(final int secs) {
+        m_validationTimeoutSecs = secs;
+        return this;
+    }
+
+    /**
+     * Set maximum time getConnection() waits for a free connection.
+     *
+     * @param millis wait time.
+     * @return this pool.
+     */
+    public ConnectionPool setMaxWaitMillis(final long millis) {
+        m_maxWaitMillis = millis;
+        return this;
+    }
+
+    /**
+     * Set size of per-connection prepared statement cache.
+     *
+     * @param n max cached statements (0 to disable caching).
+     * @return this pool.
+     */
+    public ConnectionPool setStatementCacheSize(final int n) {
+        m_stmtCacheSize = n;
+        return this;
+    }
+
+    /**
+     * Checkout connection. Connection returns to pool on close().
+     *
+     * @return pooled connection.
+     */
+    @Override
+    public Connection getConnection() {
+        Util.assertFalse(m_isClosed, "ConnectionPool: closed");
+        try {
+            if (!m_permits.tryAcquire(m_maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new Model.ModelException(new SQLException("ConnectionPool: timeout waiting for connection"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new Model.ModelException(new SQLException(ex));
+        }
+        try {
+            Pooled pooled;
+            while (null != (pooled = pollIdle())) {
+                if (isExpired(pooled, System.currentTimeMillis()) || !isValid(pooled)) {
+                    pooled.destroy();
+                } else {
+                    break;
+                }
+            }
+            if (null == pooled) {
+                pooled = new Pooled(m_source.getConnection());
+            }
+            return pooled.checkout();
+        } catch (RuntimeException ex) {
+            m_permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Close (and discard) connections which exceeded max idle time. Also done
+     * lazily on checkout.
+     *
+     * @return number of connections evicted.
+     */
+    public int evictIdle() {
+        final long now = System.currentTimeMillis();
+        int cnt = 0;
+        synchronized (m_idle) {
+            for (Iterator<Pooled> iter = m_idle.descendingIterator(); iter.hasNext();) {
+                Pooled pooled = iter.next();
+                if (isExpired(pooled, now)) {
+                    iter.remove();
+                    pooled.destroy();
+                    cnt++;
+                }
+            }
+        }
+        return cnt;
+    }
+
+    public int getIdleCount() {
+        synchronized (m_idle) {
+            return m_idle.size();
+        }
+    }
+
+    public int getActiveCount() {
+        return m_maxSize - m_permits.availablePermits();
+    }
+
+    public int getMaxSize() {
+        return m_maxSize;
+    }
+
+    /**
+     * Close idle connections. Connections still checked out are closed as
+     * they are returned.
+     */
+    @Override
+    public void close() {
+        m_isClosed = true;
+        synchronized (m_idle) {
+            m_idle.forEach(Pooled::destroy);
+            m_idle.clear();
+        }
+    }
+
+    private Pooled pollIdle() {
+        synchronized (m_idle) {
+            return m_idle.pollFirst();
+        }
+    }
+
+    private boolean isExpired(final Pooled pooled, final long now) {
+        return (0 < m_maxIdleMillis) && ((now - pooled.m_lastUsed) > m_maxIdleMillis);
+    }
+
+    private boolean isValid(final Pooled pooled) {
+        try {
+            return (0 > m_validationTimeoutSecs) || pooled.m_conn.isValid(m_validationTimeoutSecs);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void checkin(final Pooled pooled) {
+        pooled.releaseStatements();
+        try {
+            boolean keep = !m_isClosed;
+            try {
+                if (keep && !pooled.m_conn.getAutoCommit()) {
+                    //e.g.: Model.lockTable without unlockTable
+                    pooled.m_conn.rollback();
+                    pooled.m_conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                keep = false;
+            }
+            if (keep) {
+                pooled.m_lastUsed = System.currentTimeMillis();
+                synchronized (m_idle) {
+                    //most recently used first: eviction from tail
+                    m_idle.addFirst(pooled);
+                }
+            } else {
+                pooled.destroy();
+            }
+        } finally {
+            m_permits.release();
+        }
+    }
+
+    private static Object invoke(final Object on, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(on, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Physical connection and its statement cache.
+     */
+    private class Pooled {
+
+        private Pooled(final Connection conn) {
+            m_conn = conn;
+            m_stmts = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    final boolean remove = size() > m_stmtCacheSize;
+                    if (remove && !eldest.getValue().evict()) {
+                        m_evicted.add(eldest.getValue());
+                    }
+                    return remove;
+                }
+            };
+        }
+
+        private Connection checkout() {
+            return Connection.class.cast(Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new Checkout(this)));
+        }
+
+        private boolean isCacheable(final Method method) {
+            final Class<?> types[] = method.getParameterTypes();
+            return (1 == types.length)
+                    || ((3 == types.length) && (int.class == types[1]) && (int.class == types[2]));
+        }
+
+        private PreparedStatement getPreparedStatement(final Method method, final Object[] args) throws Throwable {
+            final StringBuilder key = new StringBuilder(args[0].toString());
+            for (int i = 1; i < args.length; i++) {
+                key.append('\u0000').append(args[i]);
+            }
+            final String skey = key.toString();
+            CachedStatement cached = m_stmts.get(skey);
+            if (null != cached && cached.m_inUse) {
+                //busy: do not clobber other user's parameters/result set
+                return PreparedStatement.class.cast(ConnectionPool.invoke(m_conn, method, args));
+            }
+            if (null == cached || cached.m_stmt.isClosed()) {
+                final PreparedStatement real = PreparedStatement.class.cast(ConnectionPool.invoke(m_conn, method, args));
+                cached = new CachedStatement(real);
+                m_stmts.put(skey, cached);
+            } else {
+                cached.m_stmt.clearParameters();
+                cached.m_stmt.clearBatch();
+            }
+            cached.m_inUse = true;
+            return cached.m_proxy;
+        }
+
+        /**
+         * Mark all cached statements free (connection returned to pool), and
+         * close evicted statements which were never closed by their user.
+         */
+        private void releaseStatements() {
+            m_stmts.values().forEach(stmt -> stmt.m_inUse = false);
+            m_evicted.forEach(stmt -> closeQuietly(stmt.m_stmt));
+            m_evicted.clear();
+        }
+
+        private void destroy() {
+            m_stmts.values().forEach(stmt -> closeQuietly(stmt.m_stmt));
+            m_stmts.clear();
+            m_evicted.forEach(stmt -> closeQuietly(stmt.m_stmt));
+            m_evicted.clear();
+            try {
+                m_conn.close();
+            } catch (SQLException ex) {
+                //ignore: discarding anyway
+            }
+        }
+
+        private final Connection m_conn;
+        private final Map<String, CachedStatement> m_stmts;
+        /**
+         * Evicted while in use (close deferred).
+         */
+        private final List<CachedStatement> m_evicted = new ArrayList<>();
+        private long m_lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * One checkout of pooled connection.
+     */
+    private class Checkout implements InvocationHandler {
+
+        private Checkout(final Pooled pooled) {
+            m_pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (m_isOpen) {
+                        m_isOpen = false;
+                        checkin(m_pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return !m_isOpen || m_pooled.m_conn.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            if (!m_isOpen) {
+                throw new SQLException("ConnectionPool: connection already closed");
+            }
+            if ("prepareStatement".equals(method.getName())
+                    && (0 < m_stmtCacheSize) && m_pooled.isCacheable(method)) {
+                return m_pooled.getPreparedStatement(method, args);
+            }
+            return ConnectionPool.invoke(m_pooled.m_conn, method, args);
+        }
+
+        private final Pooled m_pooled;
+        private volatile boolean m_isOpen = true;
+    }
+
+    /**
+     * Cached statement: close() only releases for reuse; real close on
+     * eviction (deferred until close() if in use).
+     */
+    private static class CachedStatement implements InvocationHandler {
+
+        private CachedStatement(final PreparedStatement stmt) {
+            m_stmt = stmt;
+            m_proxy = PreparedStatement.class.cast(Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    m_inUse = false;
+                    if (m_isEvicted) {
+                        m_stmt.close();
+                    }
+                    return null;
+                case "isClosed":
+                    return m_stmt.isClosed();
+                case "unwrap":
+                    if (PreparedStatement.class == args[0]) {
+                        return m_stmt;
+                    }
+                    break;
+            }
+            return ConnectionPool.invoke(m_stmt, method, args);
+        }
+
+        /**
+         * Evict: close now, unless in use.
+         *
+         * @return true if closed.
+         */
+        private boolean evict() {
+            m_isEvicted = true;
+            if (!m_inUse) {
+                closeQuietly(m_stmt);
+            }
+            return !m_inUse;
+        }
+
+        private final PreparedStatement m_stmt;
+        private final PreparedStatement m_proxy;
+        private volatile boolean m_inUse = false;
+        private volatile boolean m_isEvicted = false;
+    }
+
+    private static void closeQuietly(final PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ex) {
+            //ignore: discarding anyway
+        }
+    }
+
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final Model.IConnection m_source;
+    private final int m_maxSize;
+    private final Semaphore m_permits;
+    private final Deque<Pooled> m_idle = new ArrayDeque<>();
+    private volatile boolean m_isClosed = false;
+    private long m_maxIdleMillis = 0;
+    private long m_maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+    private int m_validationTimeoutSecs = 1;
+    private int m_stmtCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+}
@@ -23,22 +23,36 @@
  */
 package gblib;
 
-import java.io.FileInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 /**
  * Scan a jarfile. Create list of class/interface defined therein. NOTE: inner
@@ -54,8 +68,9 @@ import java.util.zip.ZipInputStream;
 public class JarFile {
 
     /**
-     * Parse .jar to extract class (names) defined therein. Thanx to stack
-     * overflow for this code. We do not load any class at this point.
+     * Parse .jar to extract class (names) defined therein. Only the zip
+     * central directory is read: no entry is inflated. We do not load any
+     * class at this point.
      *
      * @param fname
      * @throws FileNotFoundException
@@ -63,20 +78,134 @@ public class JarFile {
      */
     public JarFile(String fname) throws FileNotFoundException, IOException {
         m_fname = fname;
-        File jarf = new File(fname);
-        if (CLZ_BY_JAR.containsKey(jarf)) {
-            m_clsNames = CLZ_BY_JAR.get(jarf);
-        } else {
-            try (ZipInputStream zip = new ZipInputStream(new FileInputStream(m_fname));) {
-                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
-                    if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
-                        String className = entry.getName().replace('/', '.');
-                        m_clsNames.add(className.substring(0, className.length() - ".class".length()));
+        final String key = getKey(fname);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(Paths.get(key), BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            throw new FileNotFoundException(m_fname);
+        }
+        if (!attrs.isRegularFile()) {
+            throw new FileNotFoundException(m_fname);
+        }
+        PackageIndex index = CLZ_BY_JAR.get(key);
+        if ((null == index) || !index.isCurrent(attrs)) {
+            final JarIndexCache diskCache = stIndexCache;
+            final long mtime = attrs.lastModifiedTime().toMillis();
+            List<String> clsNames = (null != diskCache) ? diskCache.read(key, attrs.size(), mtime) : null;
+            if (null == clsNames) {
+                clsNames = scanClassNames(m_fname);
+                if (null != diskCache) {
+                    try {
+                        diskCache.write(key, attrs.size(), mtime, clsNames);
+                    } catch (IOException ex) {
+                        //cache is optional: rescan next time
                     }
                 }
             }
-            CLZ_BY_JAR.put(jarf, m_clsNames);
+            index = new PackageIndex(clsNames, attrs);
+            CLZ_BY_JAR.put(key, index);
+        }
+        m_index = index;
+        m_clsNames = index.m_clsNames;
+    }
+
+    /**
+     * Get class names in jar (from zip central directory).
+     */
+    private static List<String> scanClassNames(String fname) throws IOException {
+        List<String> clsNames;
+        try (ZipFile zip = new ZipFile(fname)) {
+            clsNames = new ArrayList<>(zip.size());
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                    String className = entry.getName().replace('/', '.');
+                    clsNames.add(className.substring(0, className.length() - ".class".length()));
+                }
+            }
+        }
+        return clsNames;
+    }
+
+    /**
+     * Set directory for persistent (per-jar) class name index, so unchanged
+     * jars are not rescanned in a new process. Default is value of system
+     * property "gblib.jarIndexDir" (or none).
+     *
+     * @param dir cache directory (null to disable).
+     */
+    public static void setIndexCacheDir(Path dir) {
+        stIndexCache = (null != dir) ? new JarIndexCache(dir) : null;
+    }
+
+    /**
+     * Get cache key of jar: absolute, normalized path (no file system
+     * access).
+     */
+    private static String getKey(String fname) {
+        return Paths.get(fname).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Drop memoized class names of jar. NOTE: a changed jar (size or
+     * modification time) is detected (and rescanned) anyway.
+     *
+     * @param fname .jar file.
+     */
+    public static void invalidate(String fname) {
+        CLZ_BY_JAR.remove(getKey(fname));
+    }
+
+    /**
+     * Drop all memoized jars and classes.
+     */
+    public static void clearCaches() {
+        CLZ_BY_JAR.clear();
+        CLS_BY_NAME.clear();
+    }
+
+    /**
+     * Bound number of memoized jars.
+     *
+     * @param n max jars (0 for unbounded).
+     */
+    public static void setMaxCachedJars(int n) {
+        CLZ_BY_JAR.setMaxSize(n);
+    }
+
+    /**
+     * Bound number of memoized Class.
+     *
+     * @param n max classes (0 for unbounded).
+     */
+    public static void setMaxCachedClasses(int n) {
+        CLS_BY_NAME.setMaxSize(n);
+    }
+
+    /**
+     * Scan jars in parallel (and memoize class names).
+     *
+     * @param jars .jar files.
+     * @return JarFile by name (in jars order).
+     * @throws IOException
+     */
+    public static Map<String, JarFile> scan(Collection<String> jars) throws IOException {
+        Map<String, JarFile> byName = new ConcurrentHashMap<>();
+        try {
+            jars.parallelStream().distinct().forEach(jarf -> {
+                try {
+                    byName.put(jarf, new JarFile(jarf));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
         }
+        Map<String, JarFile> ordered = new LinkedHashMap<>();
+        jars.forEach(jarf -> ordered.put(jarf, byName.get(jarf)));
+        return ordered;
     }
 
     /**
@@ -86,7 +215,7 @@ public class JarFile {
      * @return list of fully qualified class names.
      */
     public List<String> getClassNamesInPackage(String hierName) {
-        return getClassNamesInPackage(hierName, m_clsNames);
+        return m_index.getClassNamesInPackage(hierName);
     }
 
     public static List<String> getClassNamesInPackage(String hierName, List<String> clsNames) {
@@ -170,7 +299,8 @@ public class JarFile {
                 String pkgCls = fqn.substring(0, nextDot);
                 fqn = pkgCls + fqn.substring(nextDot).replace('.', '$');
             }
-            cls = Class.forName(fqn);
+            //do not initialize: static initializers run on first real use
+            cls = Class.forName(fqn, false, getClassLoader());
             CLS_BY_NAME.put(fqn, cls);
         }
         return cls;
@@ -202,29 +332,378 @@ public class JarFile {
      * @throws java.lang.ClassNotFoundException
      */
     public static Map<String, Class> getImports(Collection<String> imports, Collection<String> jars) throws IOException, ClassNotFoundException {
-        Map<String, Class> clsByName = new HashMap<>();
-        for (String imp : imports) {
-            for (String jarf : jars) {
-                List<String> clsNms = getClassNames(jarf);
-                List<String> inJar = getClassNamesInPackage(imp, clsNms);
-                if (!inJar.isEmpty()) {
-                    clsByName.putAll(getClassByName(inJar));
-                    break; //for
+        return new HashMap<>(ClasspathIndex.create(jars).getImports(imports));
+    }
+
+    /**
+     * Get map of (unresolved) class reference by fully qualified name for
+     * import specifications. No class is loaded until ClassRef.get().
+     *
+     * @param imports as specified in "require ..." statements.
+     * @param jars .jar files.
+     * @return map of ClassRef by fully qualified name.
+     * @throws java.io.IOException
+     */
+    public static Map<String, ClassRef> getLazyImports(Collection<String> imports, Collection<String> jars) throws IOException {
+        return ClasspathIndex.create(jars).getLazyImports(imports);
+    }
+
+    /**
+     * Merged index of class names over (ordered) jars: for a given import,
+     * the first jar with any match wins (as a Java classpath). Built once,
+     * then imports are resolved in parallel.
+     */
+    public static class ClasspathIndex {
+
+        /**
+         * Scan (in parallel) and merge jars.
+         *
+         * @param jars .jar files (in precedence order).
+         * @return merged index.
+         * @throws IOException
+         */
+        public static ClasspathIndex create(Collection<String> jars) throws IOException {
+            return new ClasspathIndex(jars);
+        }
+
+        private ClasspathIndex(Collection<String> jars) throws IOException {
+            long start = System.nanoTime();
+            Map<String, JarFile> byName = scan(jars);
+            start = addTiming("scan", start);
+            for (JarFile jarf : byName.values()) {
+                jarf.m_index.m_byParent.forEach(m_byParent::putIfAbsent);
+                m_dottedNames.addAll(jarf.m_index.m_dottedNames);
+            }
+            addTiming("merge", start);
+        }
+
+        /**
+         * Get matched class names of import (from first jar with match).
+         *
+         * @param hierName name (syntax) as would appear in "import ..."
+         * statement.
+         * @return list of fully qualified class names.
+         */
+        public List<String> getClassNamesInPackage(String hierName) {
+            if (hierName.endsWith(".*")) {
+                List<String> children = m_byParent.get(hierName.substring(0, hierName.length() - 2));
+                return (null != children) ? Collections.unmodifiableList(children) : Collections.emptyList();
+            }
+            return m_dottedNames.contains(hierName) ? Collections.singletonList(hierName) : Collections.emptyList();
+        }
+
+        /**
+         * Resolve imports (in parallel) to unloaded class references.
+         *
+         * @param imports as specified in "require ..." statements.
+         * @return map of ClassRef by fully qualified name.
+         */
+        public Map<String, ClassRef> getLazyImports(Collection<String> imports) {
+            final long start = System.nanoTime();
+            Map<String, ClassRef> refByName = imports
+                    .parallelStream()
+                    .distinct()
+                    .flatMap(imp -> getClassNamesInPackage(imp).stream())
+                    .distinct()
+                    .collect(Collectors.toConcurrentMap(clsName -> clsName, ClassRef::new));
+            addTiming("resolve", start);
+            return refByName;
+        }
+
+        /**
+         * Resolve imports and load (in parallel) their classes.
+         *
+         * @param imports as specified in "require ..." statements.
+         * @return map of Class by fully qualified name.
+         * @throws ClassNotFoundException
+         */
+        public Map<String, Class<?>> getImports(Collection<String> imports) throws ClassNotFoundException {
+            Map<String, ClassRef> refs = getLazyImports(imports);
+            final long start = System.nanoTime();
+            Map<String, Class<?>> clsByName = new ConcurrentHashMap<>();
+            //collect (first) failure: exceptions thrown from worker threads
+            //are re-wrapped by the stream framework
+            final AtomicReference<ClassNotFoundException> failed = new AtomicReference<>();
+            refs.values().parallelStream().forEach(ref -> {
+                if (null == failed.get()) {
+                    try {
+                        clsByName.put(ref.getName(), ref.get());
+                    } catch (ClassNotFoundException ex) {
+                        failed.compareAndSet(null, ex);
+                    }
                 }
+            });
+            if (null != failed.get()) {
+                throw failed.get();
             }
+            addTiming("load", start);
+            return new HashMap<>(clsByName);
         }
-        return clsByName;
+
+        /**
+         * Get (accumulated) time of each phase: scan, merge, resolve and
+         * load.
+         *
+         * @return milliseconds by phase (in phase order).
+         */
+        public Map<String, Long> getTimings() {
+            synchronized (m_nanosByPhase) {
+                Map<String, Long> millis = new LinkedHashMap<>();
+                m_nanosByPhase.forEach((phase, nanos) -> millis.put(phase, nanos / 1000000));
+                return millis;
+            }
+        }
+
+        private long addTiming(String phase, long start) {
+            final long now = System.nanoTime();
+            synchronized (m_nanosByPhase) {
+                m_nanosByPhase.merge(phase, now - start, Long::sum);
+            }
+            return now;
+        }
+
+        private final Map<String, List<String>> m_byParent = new HashMap<>();
+        private final Set<String> m_dottedNames = new HashSet<>();
+        private final Map<String, Long> m_nanosByPhase = new LinkedHashMap<>();
+    }
+
+    /**
+     * Class (name) resolved (once) on first get().
+     */
+    public static class ClassRef {
+
+        private ClassRef(String fqn) {
+            m_fqn = fqn;
+        }
+
+        public String getName() {
+            return m_fqn;
+        }
+
+        public boolean isResolved() {
+            return null != m_cls;
+        }
+
+        /**
+         * Get (load, but do not initialize) class.
+         *
+         * @return Class object.
+         * @throws ClassNotFoundException
+         */
+        public Class<?> get() throws ClassNotFoundException {
+            Class<?> cls = m_cls;
+            if (null == cls) {
+                m_cls = cls = JarFile.getClass(m_fqn);
+            }
+            return cls;
+        }
+
+        private final String m_fqn;
+        private volatile Class<?> m_cls = null;
+    }
+
+    /**
+     * Get fully qualified names of static fields (enum values, members) for
+     * "import static ..." specification, read from class-file bytes: the
+     * class is neither loaded nor initialized.
+     *
+     * @param hierName name (syntax) as would appear in "import static ..."
+     * statement.
+     * @return fully qualified names (in declaration order).
+     * @throws ClassNotFoundException if no class file found.
+     * @throws IOException
+     */
+    public static List<String> getStaticFieldNamesInPackage(String hierName) throws ClassNotFoundException, IOException {
+        final String clsName = hierName.substring(0, hierName.lastIndexOf('.'));
+        final String memName = hierName.endsWith(".*") ? null : hierName.substring(hierName.lastIndexOf('.') + 1);
+        List<String> fqns = new ArrayList<>();
+        try (InputStream ins = getClassFile(clsName)) {
+            if (null == ins) {
+                throw new ClassNotFoundException(clsName);
+            }
+            for (String fldName : readStaticFieldNames(ins)) {
+                if (Objects.isNull(memName) || fldName.equals(memName)) {
+                    fqns.add(clsName + "." + fldName);
+                }
+            }
+        }
+        return fqns;
+    }
+
+    /**
+     * Open class file of class name, where inner classes may be named with
+     * '.' (rather than '$').
+     *
+     * @return class file stream or null if not found.
+     */
+    private static InputStream getClassFile(String clsName) {
+        String path = clsName.replace('.', '/');
+        while (true) {
+            InputStream ins = getClassLoader().getResourceAsStream(path + ".class");
+            int slash = path.lastIndexOf('/');
+            if ((null != ins) || (0 > slash)) {
+                return ins;
+            }
+            path = path.substring(0, slash) + '$' + path.substring(slash + 1);
+        }
+    }
+
+    /**
+     * Read names of static fields from class file.
+     *
+     * @param classFile class file bytes.
+     * @return static field names (in declaration order).
+     * @throws IOException on invalid class file.
+     */
+    static List<String> readStaticFieldNames(InputStream classFile) throws IOException {
+        DataInputStream ins = new DataInputStream(new BufferedInputStream(classFile));
+        if (0xCAFEBABE != ins.readInt()) {
+            throw new IOException("not a class file");
+        }
+        ins.readUnsignedShort(); //minor
+        ins.readUnsignedShort(); //major
+        final int cpCnt = ins.readUnsignedShort();
+        final String utf8s[] = new String[cpCnt];
+        for (int i = 1; i < cpCnt; i++) {
+            final int tag = ins.readUnsignedByte();
+            switch (tag) {
+                case 1: //Utf8
+                    utf8s[i] = ins.readUTF();
+                    break;
+                case 7: //Class
+                case 8: //String
+                case 16: //MethodType
+                case 19: //Module
+                case 20: //Package
+                    skip(ins, 2);
+                    break;
+                case 15: //MethodHandle
+                    skip(ins, 3);
+                    break;
+                case 3: //Integer
+                case 4: //Float
+                case 9: //Fieldref
+                case 10: //Methodref
+                case 11: //InterfaceMethodref
+                case 12: //NameAndType
+                case 17: //Dynamic
+                case 18: //InvokeDynamic
+                    skip(ins, 4);
+                    break;
+                case 5: //Long
+                case 6: //Double
+                    skip(ins, 8);
+                    i++; //takes 2 slots
+                    break;
+                default:
+                    throw new IOException("invalid constant pool tag: " + tag);
+            }
+        }
+        skip(ins, 6); //access_flags, this_class, super_class
+        skip(ins, 2 * ins.readUnsignedShort()); //interfaces
+        final int fldCnt = ins.readUnsignedShort();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < fldCnt; i++) {
+            final int access = ins.readUnsignedShort();
+            final int nameIx = ins.readUnsignedShort();
+            skip(ins, 2); //descriptor
+            final int attrCnt = ins.readUnsignedShort();
+            for (int j = 0; j < attrCnt; j++) {
+                skip(ins, 2);
+                skip(ins, ins.readInt() & 0xFFFFFFFFL);
+            }
+            if (0 != (access & Modifier.STATIC)) {
+                names.add(utf8s[nameIx]);
+            }
+        }
+        return names;
+    }
+
+    private static void skip(DataInputStream ins, long n) throws IOException {
+        while (0 < n) {
+            long skipped = ins.skip(n);
+            if (0 >= skipped) {
+                ins.readByte(); //throws EOFException at end
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private static ClassLoader getClassLoader() {
+        ClassLoader loader = JarFile.class.getClassLoader();
+        return (null != loader) ? loader : ClassLoader.getSystemClassLoader();
     }
 
     /**
      * Memoize Class by fqn.
      */
-    private final static Map<String, Class> CLS_BY_NAME = new HashMap<>();
+    private final static LruCache<String, Class<?>> CLS_BY_NAME = new LruCache<>();
     /**
      * Memoize .jar already processed.
      */
-    private final static Map<File, List<String>> CLZ_BY_JAR = new HashMap<>();
+    private final static LruCache<String, PackageIndex> CLZ_BY_JAR = new LruCache<>();
+    /**
+     * Persistent index of jar class names (or null).
+     */
+    private static volatile JarIndexCache stIndexCache = getDefaultIndexCache();
+
+    private static JarIndexCache getDefaultIndexCache() {
+        final String dir = System.getProperty("gblib.jarIndexDir");
+        return (null != dir) ? new JarIndexCache(Paths.get(dir)) : null;
+    }
+
+    /**
+     * Class names of jar grouped by (dotted) parent name, built once per jar,
+     * so a wildcard or exact import is a hash lookup (plus result size).
+     */
+    private static class PackageIndex {
+
+        private PackageIndex(List<String> clsNames, BasicFileAttributes attrs) {
+            m_size = attrs.size();
+            m_mtime = attrs.lastModifiedTime().toMillis();
+            m_clsNames = Collections.unmodifiableList(clsNames);
+            for (String clsName : clsNames) {
+                // a hier class name will use '$' (in clsNames), but hierName does not.
+                String dotted = clsName.replace('$', '.');
+                int dot = dotted.lastIndexOf('.');
+                String parent = (0 <= dot) ? dotted.substring(0, dot) : "";
+                List<String> children = m_byParent.get(parent);
+                if (null == children) {
+                    children = new ArrayList<>();
+                    m_byParent.put(parent, children);
+                }
+                children.add(dotted);
+                m_dottedNames.add(dotted);
+            }
+        }
+
+        /**
+         * Check if jar is unchanged since scan.
+         */
+        private boolean isCurrent(BasicFileAttributes attrs) {
+            return (m_size == attrs.size()) && (m_mtime == attrs.lastModifiedTime().toMillis());
+        }
+
+        private List<String> getClassNamesInPackage(String hierName) {
+            if (hierName.endsWith(".*")) {
+                List<String> children = m_byParent.get(hierName.substring(0, hierName.length() - 2));
+                return (null != children) ? new ArrayList<>(children) : new ArrayList<>();
+            }
+            List<String> found = new ArrayList<>(1);
+            if (m_dottedNames.contains(hierName)) {
+                found.add(hierName);
+            }
+            return found;
+        }
+
+        private final long m_size, m_mtime;
+        private final List<String> m_clsNames;
+        private final Map<String, List<String>> m_byParent = new HashMap<>();
+        private final Set<String> m_dottedNames = new HashSet<>();
+    }
 
     private final String m_fname;
-    private List<String> m_clsNames = new ArrayList<>();
+    private final PackageIndex m_index;
+    private final List<String> m_clsNames;
 }
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persist class names of a jar in a compact (front-coded) index file, one per
+ * jar, under a cache directory. An index is valid only for the jar path, size
+ * and modification time it was written for; it is memory-mapped on read.
+ *
+ * @author gburdell
+ */
+public class JarIndexCache {
+
+    public JarIndexCache(Path dir) {
+        m_dir = dir;
+    }
+
+    public Path getDirectory() {
+        return m_dir;
+    }
+
+    /**
+     * Read class names of jar from index.
+     *
+     * @param jarPath absolute path of jar.
+     * @param size jar size.
+     * @param mtime jar modification time (millis).
+     * @return class names (in jar order) or null if no (valid) index.
+     */
+    public List<String> read(String jarPath, long size, long mtime) {
+        final Path idx = getIndexFile(jarPath);
+        if (!Files.isRegularFile(idx)) {
+            return null;
+        }
+        try (FileChannel chan = FileChannel.open(idx, StandardOpenOption.READ)) {
+            final MappedByteBuffer buf = chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+            if ((MAGIC != buf.getInt()) || (size != buf.getLong()) || (mtime != buf.getLong())) {
+                return null;
+            }
+            final byte path[] = new byte[buf.getShort() & 0xFFFF];
+            buf.get(path);
+            if (!jarPath.equals(new String(path, StandardCharsets.UTF_8))) {
+                return null; //hash collision
+            }
+            final int n = buf.getInt();
+            if ((0 > n) || (n > buf.remaining() / ENTRY_MIN_BYTES)) {
+                return null; //corrupt count
+            }
+            final List<String> names = new ArrayList<>(n);
+            byte prev[] = new byte[0];
+            for (int i = 0; i < n; i++) {
+                final int common = buf.getShort() & 0xFFFF;
+                final int sfxLen = buf.getShort() & 0xFFFF;
+                final byte name[] = new byte[common + sfxLen];
+                System.arraycopy(prev, 0, name, 0, common);
+                buf.get(name, common, sfxLen);
+                names.add(new String(name, StandardCharsets.UTF_8));
+                prev = name;
+            }
+            return names;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException ex) {
+            return null; //corrupt: rescan
+        }
+    }
+
+    /**
+     * Write class names of jar to index.
+     *
+     * @param jarPath absolute path of jar.
+     * @param size jar size.
+     * @param mtime jar modification time (millis).
+     * @param names class names.
+     * @throws IOException
+     */
+    public void write(String jarPath, long size, long mtime, List<String> names) throws IOException {
+        Files.createDirectories(m_dir);
+        final Path idx = getIndexFile(jarPath);
+        final Path tmp = Files.createTempFile(m_dir, ".jaridx", ".tmp");
+        try {
+            try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                os.writeInt(MAGIC);
+                os.writeLong(size);
+                os.writeLong(mtime);
+                final byte path[] = jarPath.getBytes(StandardCharsets.UTF_8);
+                os.writeShort(path.length);
+                os.write(path);
+                os.writeInt(names.size());
+                byte prev[] = new byte[0];
+                for (String name : names) {
+                    final byte curr[] = name.getBytes(StandardCharsets.UTF_8);
+                    int common = 0;
+                    final int max = Math.min(Math.min(prev.length, curr.length), 0xFFFF);
+                    while ((common < max) && (prev[common] == curr[common])) {
+                        common++;
+                    }
+                    os.writeShort(common);
+                    os.writeShort(curr.length - common);
+                    os.write(curr, common, curr.length - common);
+                    prev = curr;
+                }
+            }
+            Files.move(tmp, idx, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path getIndexFile(String jarPath) {
+        try {
+            final byte digest[] = MessageDigest.getInstance("SHA-1").digest(jarPath.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(2 * digest.length + 4);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return m_dir.resolve(hex.append(".idx").toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex); //SHA-1 is required of every JRE
+        }
+    }
+
+    /**
+     * "JIX" + format version.
+     */
+    private static final int MAGIC = 0x4a495801;
+
+    /**
+     * Bytes of smallest entry: common and suffix lengths.
+     */
+    private static final int ENTRY_MIN_BYTES = 4;
+
+    private final Path m_dir;
+}
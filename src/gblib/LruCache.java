@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent cache with optional (approximate LRU) size bound. Reads are
+ * lock-free; when the bound is exceeded, the least recently used 1/8 of
+ * entries are evicted in one pass.
+ *
+ * @author gburdell
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+public class LruCache<K, V> {
+
+    /**
+     * Create unbounded cache.
+     */
+    public LruCache() {
+        this(0);
+    }
+
+    /**
+     * Create cache.
+     *
+     * @param maxSize max entries (0 for unbounded).
+     */
+    public LruCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    public final LruCache<K, V> setMaxSize(int maxSize) {
+        Util.invariant(0 <= maxSize);
+        m_maxSize = maxSize;
+        evictIfFull();
+        return this;
+    }
+
+    public int getMaxSize() {
+        return m_maxSize;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = m_entries.get(key);
+        if (null == entry) {
+            return null;
+        }
+        entry.m_tick = m_clock.incrementAndGet();
+        return entry.m_val;
+    }
+
+    public void put(K key, V val) {
+        m_entries.put(key, new Entry<>(val, m_clock.incrementAndGet()));
+        evictIfFull();
+    }
+
+    public V remove(K key) {
+        Entry<V> entry = m_entries.remove(key);
+        return (null != entry) ? entry.m_val : null;
+    }
+
+    public void clear() {
+        m_entries.clear();
+    }
+
+    public int size() {
+        return m_entries.size();
+    }
+
+    private void evictIfFull() {
+        final int maxSize = m_maxSize;
+        if ((0 < maxSize) && (m_entries.size() > maxSize)) {
+            synchronized (this) {
+                final int n = m_entries.size();
+                if (n > maxSize) {
+                    final int nEvict = n - maxSize + Math.max(1, maxSize / 8);
+                    final List<Map.Entry<K, Entry<V>>> entries = new ArrayList<>(m_entries.entrySet());
+                    entries.sort((a, b) -> Long.compare(a.getValue().m_tick, b.getValue().m_tick));
+                    for (int i = 0; i < nEvict && i < entries.size(); i++) {
+                        Map.Entry<K, Entry<V>> eldest = entries.get(i);
+                        m_entries.remove(eldest.getKey(), eldest.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Entry<V> {
+
+        private Entry(V val, long tick) {
+            m_val = val;
+            m_tick = tick;
+        }
+
+        private final V m_val;
+        private volatile long m_tick;
+    }
+
+    private final Map<K, Entry<V>> m_entries = new ConcurrentHashMap<>();
+    private final AtomicLong m_clock = new AtomicLong();
+    private volatile int m_maxSize;
+}
@@ -136,7 +136,7 @@ public class MessageMgr {
         }
         for (Object arg : args) {
             if (arg instanceof String) {
-                nargs.add(gblib.Util.escape((String) arg));
+                nargs.add(gblib.Util.escapeNewlines((String) arg));
             } else {
                 nargs.add(arg);
             }
@@ -28,19 +28,33 @@ import static gblib.Util.invariant;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.Map;
 import java.sql.Types;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Top-level interface to facilitate (more) convenient manipulation of
@@ -66,6 +80,27 @@ public class Model {
         this(tblName, conn, true);
     }
 
+    /**
+     * Create model using (shared) schema info: no database round trips.
+     *
+     * @param tblName table name (case insensitive).
+     * @param schema schema cache.
+     * @param zeroOnNull use 0 for null numeric values on insert.
+     */
+    public Model(String tblName, SchemaCache schema, boolean zeroOnNull) {
+        m_conn = schema.getConnection();
+        m_zeroOnNull = zeroOnNull;
+        SchemaCache.Table tbl = schema.getTable(tblName);
+        invariant(null != tbl);
+        m_tblName = tbl.getName();
+        m_colInfo = tbl.getColumnInfo();
+        initColumns();
+    }
+
+    public Model(String tblName, SchemaCache schema) {
+        this(tblName, schema, true);
+    }
+
     private final boolean m_zeroOnNull;
 
     private static final String LOCK_TABLE = "LOCK TABLES @TBL@ WRITE";
@@ -75,10 +110,19 @@ public class Model {
         return s.replace("@TBL@", getTableName());
     }
 
+    /**
+     * Lock table for write. NOTE: this serializes all writers: prefer
+     * insertGetId or BlockIdAllocator (with insert(conn,id,items)).
+     *
+     * @param conn database connection.
+     * @throws SQLException
+     */
     public void lockTable(Connection conn) throws SQLException {
         conn.setAutoCommit(false);
         PreparedStatement stmt = Model.getPreparedStatement(conn, subTable(LOCK_TABLE));
+        final long start = ModelStats.start();
         invariant(!stmt.execute());
+        m_stats.record(ModelStats.Phase.LOCK_WAIT, start);
     }
 
     public void unlockTable(Connection conn) throws SQLException {
@@ -174,6 +218,7 @@ public class Model {
 
     private void setup() throws SQLException {
         if (null == m_colInfo) {
+            final long start = ModelStats.start();
             setTableName();
             int coli = 1;
             try (Connection conn = getConnection()) {
@@ -191,21 +236,30 @@ public class Model {
                     m_colInfo.put(colNm, new PosType(coli, typeNm));
                     coli++;
                 }
-                m_colNames = new LinkedList<>(m_colInfo.keySet());
-                invariant(m_colNames.remove("ID"));
-                StringBuilder bld = new StringBuilder("INSERT INTO ");
-                bld
-                        .append(getTableName())
-                        .append(" (")
-                        .append(Util.toCSV(getColumnNames()))
-                        .append(") VALUES (")
-                        .append(Util.toCSV(Util.replicate("?", getColumnNames().size())))
-                        .append(")");
-                m_insertStmt = bld.toString();
             }
+            initColumns();
+            m_stats.record(ModelStats.Phase.SETUP, start);
         }
     }
 
+    private void initColumns() {
+        m_stats = ModelStats.get(getTableName());
+        m_colNames = new LinkedList<>(m_colInfo.keySet());
+        invariant(m_colNames.remove("ID"));
+        StringBuilder bld = new StringBuilder("INSERT INTO ");
+        bld
+                .append(getTableName())
+                .append(" (")
+                .append(Util.toCSV(getColumnNames()))
+                .append(") VALUES (")
+                .append(Util.toCSV(Util.replicate("?", getColumnNames().size())))
+                .append(")");
+        m_insertStmt = bld.toString();
+        m_insertWithIdStmt = "INSERT INTO " + getTableName()
+                + " (" + Util.toCSV(m_colInfo.keySet())
+                + ") VALUES (" + Util.toCSV(Util.replicate("?", m_colInfo.size())) + ")";
+    }
+
     /**
      * Get index of ID column.
      *
@@ -234,7 +288,7 @@ public class Model {
     }
 
     public static Timestamp getCurrentTimeStamp() {
-        return asTimestamp(getCurrentTime());
+        return new Timestamp(System.currentTimeMillis());
     }
 
     public static Timestamp asTimestamp(Date date) {
@@ -250,65 +304,670 @@ public class Model {
      * @throws SQLException
      */
     public PreparedStatement insert(Connection conn, Map<String, Object> items) throws SQLException {
+        final long start = ModelStats.start();
         PreparedStatement stmt = getPreparedStatement(conn, m_insertStmt);
+        m_stats.record(ModelStats.Phase.PREPARE, start);
+        bindInsert(stmt, items);
+        return stmt;
+    }
+
+    /**
+     * Insert values into table and return generated ID. No table lock is
+     * required (use instead of lockTable/insert/getMaxID/unlockTable).
+     *
+     * @param conn database connection.
+     * @param items Map of Object values by key aligned with column names.
+     * @return generated ID.
+     * @throws SQLException
+     */
+    public long insertGetId(Connection conn, Map<String, Object> items) throws SQLException {
+        long start = ModelStats.start();
+        try (PreparedStatement stmt = conn.prepareStatement(m_insertStmt, Statement.RETURN_GENERATED_KEYS)) {
+            m_stats.record(ModelStats.Phase.PREPARE, start);
+            bindInsert(stmt, items);
+            start = ModelStats.start();
+            invariant(1 == stmt.executeUpdate());
+            m_stats.record(ModelStats.Phase.EXECUTE, start);
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                invariant(rs.next());
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Create PreparedStatement to insert values into table with explicit ID
+     * (e.g., from IdAllocator).
+     *
+     * @param conn database connection.
+     * @param id ID value.
+     * @param items Map of Object values by key aligned with column names.
+     * @return completed PreparedStatement to insert.
+     * @throws SQLException
+     */
+    public PreparedStatement insert(Connection conn, long id, Map<String, Object> items) throws SQLException {
+        long start = ModelStats.start();
+        PreparedStatement stmt = getPreparedStatement(conn, m_insertWithIdStmt);
+        m_stats.record(ModelStats.Phase.PREPARE, start);
         invariant(getColumnNames().size() == items.size());  //dont count ID
-        for (String colNm : items.keySet()) {
-            PosType pt = m_colInfo.get(colNm.toUpperCase());
-            invariant(null != pt);
-            Object val = items.get(colNm);
-            int stmtPos = getInsertIndex(pt.v1);
-            switch (pt.v2) {
-                case Types.INTEGER:
-                    Long lng;
-                    if ((null == val) && m_zeroOnNull) {
-                        lng = 0L;
-                    } else if (val instanceof Number) {
-                        Number n = Util.downCast(val);
-                        lng = n.longValue();
-                    } else {
-                        //NOTE: m_zeroOnNull mitigates null here...
-                        lng = Long.parseLong(val.toString());
+        start = ModelStats.start();
+        stmt.setLong(getIdCol(), id);
+        for (Map.Entry<String, Object> item : items.entrySet()) {
+            PosType pt = getPosType(item.getKey());
+            bind(stmt, pt.v1, pt, item.getValue());
+        }
+        m_stats.record(ModelStats.Phase.BIND, start);
+        return stmt;
+    }
+
+    private void bindInsert(PreparedStatement stmt, Map<String, Object> items) throws SQLException {
+        invariant(getColumnNames().size() == items.size());  //dont count ID
+        final long start = ModelStats.start();
+        for (Map.Entry<String, Object> item : items.entrySet()) {
+            PosType pt = getPosType(item.getKey());
+            bind(stmt, getInsertIndex(pt.v1), pt, item.getValue());
+        }
+        m_stats.record(ModelStats.Phase.BIND, start);
+    }
+
+    /**
+     * Prepare (reusable) insert statement for batching with addInsertBatch.
+     *
+     * @param conn database connection.
+     * @return insert statement.
+     * @throws SQLException
+     */
+    public PreparedStatement prepareInsert(Connection conn) throws SQLException {
+        final long start = ModelStats.start();
+        PreparedStatement stmt = conn.prepareStatement(m_insertStmt);
+        m_stats.record(ModelStats.Phase.PREPARE, start);
+        return stmt;
+    }
+
+    /**
+     * Bind row values (by position) to insert statement and add to batch.
+     *
+     * @param stmt statement from prepareInsert.
+     * @param colNms column names (all but ID) aligned with vals.
+     * @param vals row values.
+     * @throws SQLException
+     */
+    public void addInsertBatch(PreparedStatement stmt, String colNms[], Object vals[]) throws SQLException {
+        invariant((getColumnNames().size() == colNms.length) && (colNms.length == vals.length));
+        final long start = ModelStats.start();
+        for (int i = 0; i < colNms.length; i++) {
+            PosType pt = getPosType(colNms[i]);
+            bind(stmt, getInsertIndex(pt.v1), pt, vals[i]);
+        }
+        stmt.addBatch();
+        m_stats.record(ModelStats.Phase.BIND, start);
+    }
+
+    /**
+     * SQL flavor of generated upsert.
+     */
+    public static enum UpsertDialect {
+        /**
+         * INSERT ... ON DUPLICATE KEY UPDATE (MySQL): key columns must have
+         * a unique index.
+         */
+        ON_DUPLICATE_KEY,
+        /**
+         * MERGE INTO ... KEY (...) VALUES (H2).
+         */
+        MERGE
+    }
+
+    /**
+     * Create batched upsert (insert or update by key) of all columns (but
+     * ID).
+     *
+     * @param conn database connection.
+     * @param keyCols (unique) key columns: a non-empty, proper subset of
+     * getColumnNames() (so not ID).
+     * @param dialect SQL flavor.
+     * @param batchSize rows per executeBatch.
+     * @return batch statement.
+     * @throws SQLException
+     */
+    public BatchStatement prepareUpsert(Connection conn, List<String> keyCols, UpsertDialect dialect, int batchSize) throws SQLException {
+        final List<String> colNms = getColumnNames();
+        invariant(!keyCols.isEmpty() && (keyCols.size() < colNms.size()));
+        for (String keyCol : keyCols) {
+            invariant(containsIgnoreCase(colNms, keyCol));
+        }
+        final String vals = Util.toCSV(Util.replicate("?", colNms.size()));
+        final StringBuilder bld = new StringBuilder();
+        switch (dialect) {
+            case ON_DUPLICATE_KEY:
+                bld
+                        .append("INSERT INTO ").append(getTableName())
+                        .append(" (").append(Util.toCSV(colNms)).append(") VALUES (").append(vals)
+                        .append(") ON DUPLICATE KEY UPDATE ");
+                String sep = "";
+                for (String colNm : colNms) {
+                    if (!containsIgnoreCase(keyCols, colNm)) {
+                        bld.append(sep).append(colNm).append(" = VALUES(").append(colNm).append(")");
+                        sep = ", ";
                     }
-                    stmt.setLong(stmtPos, lng);
-                    break;
-                case Types.LONGVARCHAR:
-                case Types.CHAR:
-                    stmt.setString(stmtPos, val.toString());
-                    break;
-                case Types.TIMESTAMP:
-                    try {
-                        Date date = (null != val) ? DATE_FMT.parse(val.toString()) : getCurrentTime();
-                        stmt.setTimestamp(stmtPos, asTimestamp(date));
-                    } catch (ParseException ex) {
-                        abnormalExit(ex);
+                }
+                break;
+            case MERGE:
+                bld
+                        .append("MERGE INTO ").append(getTableName())
+                        .append(" (").append(Util.toCSV(colNms)).append(") KEY (").append(Util.toCSV(keyCols))
+                        .append(") VALUES (").append(vals).append(")");
+                break;
+        }
+        return new BatchStatement(conn.prepareStatement(bld.toString()), colNms, batchSize);
+    }
+
+    /**
+     * Create batched UPDATE ... SET setCols WHERE keyCols.
+     *
+     * @param conn database connection.
+     * @param keyCols key columns (e.g., ID).
+     * @param setCols columns to update.
+     * @param batchSize rows per executeBatch.
+     * @return batch statement.
+     * @throws SQLException
+     */
+    public BatchStatement prepareUpdate(Connection conn, List<String> keyCols, List<String> setCols, int batchSize) throws SQLException {
+        invariant(!keyCols.isEmpty() && !setCols.isEmpty());
+        final StringBuilder bld = new StringBuilder("UPDATE ");
+        bld.append(getTableName()).append(" SET ");
+        String sep = "";
+        for (String colNm : setCols) {
+            bld.append(sep).append(colNm).append(" = ?");
+            sep = ", ";
+        }
+        bld.append(" WHERE ");
+        sep = "";
+        for (String colNm : keyCols) {
+            bld.append(sep).append(colNm).append(" = ?");
+            sep = " AND ";
+        }
+        final List<String> params = new ArrayList<>(setCols.size() + keyCols.size());
+        params.addAll(setCols);
+        params.addAll(keyCols);
+        return new BatchStatement(conn.prepareStatement(bld.toString()), params, batchSize);
+    }
+
+    /**
+     * Create batched update of all columns (but ID) by ID.
+     *
+     * @param conn database connection.
+     * @param batchSize rows per executeBatch.
+     * @return batch statement.
+     * @throws SQLException
+     */
+    public BatchStatement prepareUpdateById(Connection conn, int batchSize) throws SQLException {
+        return prepareUpdate(conn, Collections.singletonList("ID"), getColumnNames(), batchSize);
+    }
+
+    private static boolean containsIgnoreCase(List<String> names, String name) {
+        return names.stream().anyMatch(name::equalsIgnoreCase);
+    }
+
+    /**
+     * PreparedStatement with parameters bound (by column type) from row
+     * values, and executed in batches.
+     */
+    public class BatchStatement implements AutoCloseable {
+
+        private BatchStatement(PreparedStatement stmt, List<String> params, int batchSize) {
+            invariant(0 < batchSize);
+            m_stmt = stmt;
+            m_batchSize = batchSize;
+            m_params = new PosType[params.size()];
+            for (int i = 0; i < m_params.length; i++) {
+                m_params[i] = getPosType(params.get(i));
+            }
+            m_paramNames = Collections.unmodifiableList(new ArrayList<>(params));
+        }
+
+        /**
+         * Get column names, in parameter order.
+         *
+         * @return column names.
+         */
+        public List<String> getParameterNames() {
+            return m_paramNames;
+        }
+
+        /**
+         * Add row (executing batch if full).
+         *
+         * @param vals values aligned with getParameterNames().
+         * @throws SQLException
+         */
+        public void add(Object vals[]) throws SQLException {
+            invariant(vals.length == m_params.length);
+            final long start = ModelStats.start();
+            for (int i = 0; i < vals.length; i++) {
+                bind(m_stmt, i + 1, m_params[i], vals[i]);
+            }
+            m_stats.record(ModelStats.Phase.BIND, start);
+            addBatch();
+        }
+
+        /**
+         * Add row (executing batch if full).
+         *
+         * @param items values by column name (must include all parameters).
+         * @throws SQLException
+         */
+        public void add(Map<String, Object> items) throws SQLException {
+            final long start = ModelStats.start();
+            final Map<String, Object> byUpper = new HashMap<>(2 * items.size());
+            items.forEach((k, v) -> byUpper.put(k.toUpperCase(), v));
+            for (int i = 0; i < m_params.length; i++) {
+                final String colNm = m_paramNames.get(i).toUpperCase();
+                invariant(byUpper.containsKey(colNm));
+                bind(m_stmt, i + 1, m_params[i], byUpper.get(colNm));
+            }
+            m_stats.record(ModelStats.Phase.BIND, start);
+            addBatch();
+        }
+
+        private void addBatch() throws SQLException {
+            m_stmt.addBatch();
+            if (++m_pending >= m_batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Execute pending rows.
+         *
+         * @return total rows affected (so far).
+         * @throws SQLException
+         */
+        public long flush() throws SQLException {
+            if (0 < m_pending) {
+                final long start = ModelStats.start();
+                final int cnts[] = m_stmt.executeBatch();
+                m_stats.record(ModelStats.Phase.EXECUTE, start);
+                for (int cnt : cnts) {
+                    if (0 < cnt) {
+                        m_updateCnt += cnt;
                     }
-                    break;
-                case Types.BIT:
-                    Boolean bitv = (null != val) ? Boolean.parseBoolean(val.toString()) : false;
-                    stmt.setBoolean(stmtPos, bitv);
-                    break;
-                case Types.REAL:
-                    Double dbl;
-                    if ((null == val) && m_zeroOnNull) {
-                        dbl = 0.0;
-                    } else if (val instanceof Number) {
-                        Number n = Util.downCast(val);
-                        dbl = n.doubleValue();
-                    } else {
-                        //NOTE: m_zeroOnNull mitigates null here...
-                        dbl = Double.parseDouble(val.toString());
+                }
+                m_pending = 0;
+            }
+            return m_updateCnt;
+        }
+
+        /**
+         * Get rows affected (as reported by driver) by executed batches.
+         *
+         * @return rows affected.
+         */
+        public long getUpdateCount() {
+            return m_updateCnt;
+        }
+
+        /**
+         * Flush and close.
+         *
+         * @throws SQLException
+         */
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                m_stmt.close();
+            }
+        }
+
+        private final PreparedStatement m_stmt;
+        private final PosType m_params[];
+        private final List<String> m_paramNames;
+        private final int m_batchSize;
+        private int m_pending = 0;
+        private long m_updateCnt = 0;
+    }
+
+    private PosType getPosType(String colNm) {
+        PosType pt = m_colInfo.get(colNm.toUpperCase());
+        invariant(null != pt);
+        return pt;
+    }
+
+    /**
+     * Bind value to statement position using column type.
+     */
+    private void bind(PreparedStatement stmt, int stmtPos, PosType pt, Object val) throws SQLException {
+        switch (pt.v2) {
+            case Types.INTEGER:
+                Long lng;
+                if ((null == val) && m_zeroOnNull) {
+                    lng = 0L;
+                } else if (val instanceof Number) {
+                    Number n = Util.downCast(val);
+                    lng = n.longValue();
+                } else {
+                    //NOTE: m_zeroOnNull mitigates null here...
+                    lng = Long.parseLong(val.toString());
+                }
+                stmt.setLong(stmtPos, lng);
+                break;
+            case Types.LONGVARCHAR:
+            case Types.CHAR:
+                stmt.setString(stmtPos, val.toString());
+                break;
+            case Types.TIMESTAMP:
+                try {
+                    stmt.setTimestamp(stmtPos, toTimestamp(val));
+                } catch (DateTimeParseException ex) {
+                    abnormalExit(ex);
+                }
+                break;
+            case Types.BIT:
+                Boolean bitv = (null != val) ? Boolean.parseBoolean(val.toString()) : false;
+                stmt.setBoolean(stmtPos, bitv);
+                break;
+            case Types.REAL:
+                Double dbl;
+                if ((null == val) && m_zeroOnNull) {
+                    dbl = 0.0;
+                } else if (val instanceof Number) {
+                    Number n = Util.downCast(val);
+                    dbl = n.doubleValue();
+                } else {
+                    //NOTE: m_zeroOnNull mitigates null here...
+                    dbl = Double.parseDouble(val.toString());
+                }
+                stmt.setDouble(stmtPos, dbl);
+                break;
+            default:
+                invariant(false);
+        }
+    }
+
+    private static final String VERSION_COL = "VERSION";
+
+    /**
+     * Optimistic update: update row iff. its VERSION column still matches
+     * the version read by caller. VERSION is incremented on success. Only
+     * the row is locked (by database), so concurrent writers scale.
+     *
+     * @param conn database connection.
+     * @param id ID of row to update.
+     * @param version version read by caller.
+     * @param items Map of Object values by column name (subset of columns).
+     * @return true if updated; false if row changed (or deleted) since read.
+     * @throws SQLException
+     */
+    public boolean updateIfVersion(Connection conn, long id, long version, Map<String, Object> items) throws SQLException {
+        invariant(m_colInfo.containsKey(VERSION_COL));
+        List<String> colNms = new ArrayList<>(items.keySet());
+        StringBuilder bld = new StringBuilder("UPDATE ");
+        bld.append(getTableName()).append(" SET ");
+        for (String colNm : colNms) {
+            invariant(!VERSION_COL.equalsIgnoreCase(colNm));
+            bld.append(colNm).append(" = ?, ");
+        }
+        bld
+                .append(VERSION_COL).append(" = ").append(VERSION_COL).append(" + 1")
+                .append(" WHERE ID = ? AND ").append(VERSION_COL).append(" = ?");
+        try (PreparedStatement stmt = conn.prepareStatement(bld.toString())) {
+            int pos = 1;
+            for (String colNm : colNms) {
+                bind(stmt, pos++, getPosType(colNm), items.get(colNm));
+            }
+            stmt.setLong(pos++, id);
+            stmt.setLong(pos, version);
+            final long start = ModelStats.start();
+            final int cnt = stmt.executeUpdate();
+            m_stats.record(ModelStats.Phase.EXECUTE, start);
+            return (1 == cnt);
+        }
+    }
+
+    /**
+     * Allocate ID values for insert(conn,id,items).
+     */
+    public static interface IdAllocator {
+
+        public long nextId() throws SQLException;
+    }
+
+    /**
+     * Hand out IDs from a reserved block using AtomicLong: the database is
+     * only touched (to reserve another block) once per blockSize IDs.
+     * <p>
+     * With a sequence table, blocks are reserved by a row-level update, so
+     * allocators in different processes do not collide. The sequence table
+     * is created by user as:
+     * <pre>
+     * CREATE TABLE seqTbl (TBL_NAME VARCHAR(64) PRIMARY KEY, NEXT_ID BIGINT NOT NULL)
+     * </pre>
+     * Without a sequence table (seqTbl == null), the allocator is seeded once
+     * from MAX(ID) and is only safe when it is the sole writer of the table.
+     */
+    public static class BlockIdAllocator implements IdAllocator {
+
+        public BlockIdAllocator(Model model, String seqTbl, int blockSize) {
+            invariant(0 < blockSize);
+            m_model = model;
+            m_seqTbl = seqTbl;
+            m_blockSize = (null != seqTbl) ? blockSize : Long.MAX_VALUE;
+        }
+
+        @Override
+        public long nextId() throws SQLException {
+            while (true) {
+                final Block blk = m_block;
+                if (null != blk) {
+                    final long id = blk.m_next.getAndIncrement();
+                    if (id < blk.m_limit) {
+                        return id;
                     }
-                    stmt.setDouble(stmtPos, dbl);
-                    break;
-                default:
-                    invariant(false);
+                }
+                synchronized (this) {
+                    if (blk == m_block) {
+                        final long start = reserve();
+                        m_block = new Block(start, (null != m_seqTbl) ? (start + m_blockSize) : Long.MAX_VALUE);
+                    }
+                }
             }
         }
-        return stmt;
+
+        /**
+         * Reserve next block.
+         *
+         * @return first ID of block.
+         */
+        private long reserve() throws SQLException {
+            try (Connection conn = m_model.getConnection()) {
+                if (null == m_seqTbl) {
+                    return m_model.getMaxID(conn) + 1;
+                }
+                final boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    final String tblName = m_model.getTableName();
+                    long next = advance(conn, tblName);
+                    if (0 > next) {
+                        //first use: seed
+                        next = m_model.getMaxID(conn) + 1 + m_blockSize;
+                        try (PreparedStatement ins = conn.prepareStatement(
+                                "INSERT INTO " + m_seqTbl + " (TBL_NAME, NEXT_ID) VALUES (?, ?)")) {
+                            ins.setString(1, tblName);
+                            ins.setLong(2, next);
+                            invariant(1 == ins.executeUpdate());
+                        } catch (SQLException ex) {
+                            if (!isDuplicateKey(ex)) {
+                                throw ex;
+                            }
+                            //concurrent seed won: advance from its row instead
+                            conn.rollback();
+                            next = advance(conn, tblName);
+                            if (0 > next) {
+                                throw ex;
+                            }
+                        }
+                    }
+                    conn.commit();
+                    return next - m_blockSize;
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }
+        }
+
+        /**
+         * Advance NEXT_ID of table by one block.
+         *
+         * @return updated NEXT_ID (or -1 if table has no row yet).
+         */
+        private long advance(Connection conn, String tblName) throws SQLException {
+            try (PreparedStatement upd = conn.prepareStatement(
+                    "UPDATE " + m_seqTbl + " SET NEXT_ID = NEXT_ID + ? WHERE TBL_NAME = ?")) {
+                upd.setLong(1, m_blockSize);
+                upd.setString(2, tblName);
+                if (0 == upd.executeUpdate()) {
+                    return -1;
+                }
+            }
+            try (PreparedStatement sel = conn.prepareStatement(
+                    "SELECT NEXT_ID FROM " + m_seqTbl + " WHERE TBL_NAME = ?")) {
+                sel.setString(1, tblName);
+                try (ResultSet rs = sel.executeQuery()) {
+                    invariant(rs.next());
+                    return rs.getLong(1);
+                }
+            }
+        }
+
+        /**
+         * Check for duplicate key (integrity constraint violation: SQLSTATE
+         * class 23).
+         */
+        private static boolean isDuplicateKey(SQLException ex) {
+            return (ex instanceof SQLIntegrityConstraintViolationException)
+                    || ((null != ex.getSQLState()) && ex.getSQLState().startsWith("23"));
+        }
+
+        private static class Block {
+
+            private Block(long start, long limit) {
+                m_next = new AtomicLong(start);
+                m_limit = limit;
+            }
+
+            private final AtomicLong m_next;
+            private final long m_limit;
+        }
+
+        private final Model m_model;
+        private final String m_seqTbl;
+        private final long m_blockSize;
+        private volatile Block m_block = null;
+    }
+
+    /**
+     * Convert value to Timestamp (thread-safe).
+     *
+     * @param val one of: null (current time), Timestamp, Date, Instant,
+     * LocalDateTime (in default time zone), ZonedDateTime, OffsetDateTime,
+     * Number (epoch milliseconds) or String (as DATE_FMT).
+     * @return timestamp.
+     * @throws DateTimeParseException on invalid String.
+     */
+    public static Timestamp toTimestamp(Object val) {
+        if (null == val) {
+            return new Timestamp(System.currentTimeMillis());
+        } else if (val instanceof Timestamp) {
+            return (Timestamp) val;
+        } else if (val instanceof Date) {
+            return new Timestamp(((Date) val).getTime());
+        } else if (val instanceof Instant) {
+            return Timestamp.from((Instant) val);
+        } else if (val instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) val);
+        } else if (val instanceof ZonedDateTime) {
+            return Timestamp.from(((ZonedDateTime) val).toInstant());
+        } else if (val instanceof OffsetDateTime) {
+            return Timestamp.from(((OffsetDateTime) val).toInstant());
+        } else if (val instanceof Number) {
+            return new Timestamp(((Number) val).longValue());
+        }
+        return new Timestamp(parseEpochMillis(val.toString()));
     }
 
     //2017-02-26 15:03:52 -0800
-    private static final DateFormat DATE_FMT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
+    public static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z");
+
+    /**
+     * Parse DATE_FMT value to epoch milliseconds. The fixed layout is parsed
+     * directly (no allocation); anything else falls back to DATE_FMT.
+     *
+     * @param s value as DATE_FMT.
+     * @return epoch milliseconds.
+     * @throws DateTimeParseException on invalid value.
+     */
+    public static long parseEpochMillis(CharSequence s) {
+        //0123456789012345678901234
+        //2017-02-26 15:03:52 -0800
+        if ((25 == s.length())
+                && ('-' == s.charAt(4)) && ('-' == s.charAt(7)) && (' ' == s.charAt(10))
+                && (':' == s.charAt(13)) && (':' == s.charAt(16)) && (' ' == s.charAt(19))
+                && (('+' == s.charAt(20)) || ('-' == s.charAt(20)))) {
+            final int year = digits(s, 0, 4), month = digits(s, 5, 2), day = digits(s, 8, 2),
+                    hour = digits(s, 11, 2), min = digits(s, 14, 2), sec = digits(s, 17, 2),
+                    offHour = digits(s, 21, 2), offMin = digits(s, 23, 2);
+            if ((0 <= year) && (1 <= month) && (12 >= month) && (1 <= day) && (day <= daysInMonth(year, month))
+                    && (0 <= hour) && (24 > hour) && (0 <= min) && (60 > min) && (0 <= sec) && (60 > sec)
+                    && (0 <= offHour) && (18 >= offHour) && (0 <= offMin) && (60 > offMin)) {
+                final int offSecs = (('-' == s.charAt(20)) ? -1 : 1) * (offHour * 3600 + offMin * 60);
+                final long secs = epochDay(year, month, day) * 86400L + hour * 3600 + min * 60 + sec - offSecs;
+                return secs * 1000L;
+            }
+        }
+        return OffsetDateTime.parse(s, DATE_FMT).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Parse n decimal digits.
+     *
+     * @return value or -1 if not all digits.
+     */
+    private static int digits(CharSequence s, int from, int n) {
+        int v = 0;
+        for (int i = from; i < from + n; i++) {
+            final int d = s.charAt(i) - '0';
+            if ((0 > d) || (9 < d)) {
+                return -1;
+            }
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (2 == month) {
+            return ((0 == year % 4) && ((0 != year % 100) || (0 == year % 400))) ? 29 : 28;
+        }
+        return ((4 == month) || (6 == month) || (9 == month) || (11 == month)) ? 30 : 31;
+    }
+
+    /**
+     * Days since 1970-01-01 of (proleptic Gregorian) date.
+     */
+    private static long epochDay(int year, int month, int day) {
+        final long y = (2 >= month) ? (year - 1) : year;
+        final long era = ((0 <= y) ? y : (y - 399)) / 400;
+        final long yoe = y - era * 400;
+        final long doy = (153 * (month + ((2 < month) ? -3 : 9)) + 2) / 5 + day - 1;
+        final long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
 
     public static Statement createStatement(Connection conn) throws SQLException {
         return createStatement(conn, true);
@@ -331,6 +990,234 @@ public class Model {
                 (updatable) ? ResultSet.CONCUR_UPDATABLE : ResultSet.CONCUR_READ_ONLY);
     }
 
+    /**
+     * Create forward-only, read-only Statement which hints driver to stream
+     * (rather than materialize) results.
+     *
+     * @param conn database connection.
+     * @param fetchSize rows per fetch (driver specific: e.g., MySQL streams
+     * row-by-row with Integer.MIN_VALUE).
+     * @return streaming Statement.
+     * @throws SQLException
+     */
+    public static Statement createStreamingStatement(Connection conn, int fetchSize) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(fetchSize);
+        return stmt;
+    }
+
+    public static PreparedStatement getStreamingPreparedStatement(Connection conn, String stmt, int fetchSize) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(stmt, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(fetchSize);
+        return pstmt;
+    }
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * Stream all rows of table.
+     *
+     * @param conn database connection (caller closes).
+     * @param fetchSize rows per fetch.
+     * @return iterator over (reused) rows. Caller must close.
+     * @throws SQLException
+     */
+    public RowIterator select(Connection conn, int fetchSize) throws SQLException {
+        return query(conn, "SELECT * FROM " + getTableName(), fetchSize);
+    }
+
+    public RowIterator select(Connection conn) throws SQLException {
+        return select(conn, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Stream rows of query.
+     *
+     * @param conn database connection (caller closes).
+     * @param sql query.
+     * @param fetchSize rows per fetch.
+     * @return iterator over (reused) rows. Caller must close.
+     * @throws SQLException
+     */
+    public static RowIterator query(Connection conn, String sql, int fetchSize) throws SQLException {
+        Statement stmt = createStreamingStatement(conn, fetchSize);
+        try {
+            return new RowIterator(stmt, stmt.executeQuery(sql));
+        } catch (SQLException | RuntimeException ex) {
+            try {
+                stmt.close();
+            } catch (SQLException ex2) {
+                ex.addSuppressed(ex2);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Stream rows of (already bound) streaming PreparedStatement.
+     *
+     * @param stmt statement from getStreamingPreparedStatement.
+     * @return iterator over (reused) rows. Caller must close.
+     * @throws SQLException
+     */
+    public static RowIterator query(PreparedStatement stmt) throws SQLException {
+        return new RowIterator(stmt, stmt.executeQuery());
+    }
+
+    /**
+     * Read all rows of table into (primitive) columns, using a streaming
+     * statement.
+     *
+     * @param conn database connection.
+     * @param fetchSize rows per fetch.
+     * @return columnar result.
+     * @throws SQLException
+     */
+    public ColumnarResult selectColumnar(Connection conn, int fetchSize) throws SQLException {
+        try (Statement stmt = createStreamingStatement(conn, fetchSize);
+                ResultSet rs = stmt.executeQuery("SELECT * FROM " + getTableName())) {
+            return ColumnarResult.read(rs);
+        }
+    }
+
+    /**
+     * Row of SqlVal. A Row (and its values) is reused by RowIterator for each
+     * next(): copy values out if they must outlive the iteration step.
+     */
+    public static class Row {
+
+        private Row(final ResultSetMetaData md) throws SQLException {
+            final int n = md.getColumnCount();
+            m_vals = new SqlVal[n];
+            m_colByName = new HashMap<>(2 * n);
+            for (int i = 0; i < n; i++) {
+                final int sqlType = md.getColumnType(i + 1);
+                if (!SqlVal.isSupported(sqlType)) {
+                    throw new SQLException(md.getColumnLabel(i + 1) + ": unsupported type " + sqlType);
+                }
+                m_vals[i] = new SqlVal(sqlType);
+                m_colByName.put(md.getColumnLabel(i + 1).toUpperCase(), i);
+            }
+        }
+
+        private void set(final ResultSet rs) throws SQLException {
+            for (int i = 0; i < m_vals.length; i++) {
+                m_vals[i].set(rs, i + 1);
+            }
+        }
+
+        public int size() {
+            return m_vals.length;
+        }
+
+        /**
+         * Get value by column index.
+         *
+         * @param col column index (1-based, as ResultSet).
+         * @return value.
+         */
+        public SqlVal get(int col) {
+            return m_vals[col - 1];
+        }
+
+        /**
+         * Get value by column name.
+         *
+         * @param colnm column name (case insensitive).
+         * @return value or null if no such column.
+         */
+        public SqlVal get(String colnm) {
+            Integer i = m_colByName.get(colnm.toUpperCase());
+            return (null != i) ? m_vals[i] : null;
+        }
+
+        private final SqlVal m_vals[];
+        private final Map<String, Integer> m_colByName;
+    }
+
+    /**
+     * Forward-only iterator over ResultSet which reuses a single Row.
+     * Column metadata is read once (on creation).
+     */
+    public static class RowIterator implements Iterator<Row>, AutoCloseable {
+
+        private RowIterator(final Statement stmt, final ResultSet rs) throws SQLException {
+            m_stmt = stmt;
+            m_rs = rs;
+            try {
+                m_row = new Row(rs.getMetaData());
+            } catch (SQLException ex) {
+                rs.close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!m_isAdvanced && !m_isDone) {
+                try {
+                    m_isDone = !m_rs.next();
+                    if (!m_isDone) {
+                        m_row.set(m_rs);
+                    }
+                } catch (SQLException ex) {
+                    throw new ModelException(ex);
+                }
+                m_isAdvanced = true;
+            }
+            return !m_isDone;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            m_isAdvanced = false;
+            return m_row;
+        }
+
+        /**
+         * Get (sequential) Stream of rows. Closing the stream closes this.
+         *
+         * @return stream of (reused) rows.
+         */
+        public Stream<Row> stream() {
+            return StreamSupport
+                    .stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(this::close);
+        }
+
+        /**
+         * Close result set and statement (even if result set close fails).
+         */
+        @Override
+        public void close() {
+            try (Statement stmt = m_stmt; ResultSet rs = m_rs) {
+                //closed in reverse order: rs, then stmt
+            } catch (SQLException ex) {
+                throw new ModelException(ex);
+            }
+        }
+
+        private final Statement m_stmt;
+        private final ResultSet m_rs;
+        private final Row m_row;
+        private boolean m_isAdvanced = false, m_isDone = false;
+    }
+
+    /**
+     * Unchecked wrapper of SQLException (e.g., thrown from Iterator).
+     */
+    public static class ModelException extends RuntimeException {
+
+        public ModelException(SQLException cause) {
+            super(cause);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
     /**
      * Get column type.
      *
@@ -368,47 +1255,126 @@ public class Model {
         }
 
         public SqlVal(final ResultSet rs, int col) throws SQLException {
-            m_sqlType = rs.getMetaData().getColumnType(col);
-            switch (m_sqlType) {
-                case Types.INTEGER:
+            this(rs.getMetaData().getColumnType(col));
+            set(rs, col);
+        }
+
+        /**
+         * Create (empty) value of type, to be (re)loaded using set(rs,col).
+         *
+         * @param sqlType sql.Types value.
+         */
+        public SqlVal(int sqlType) {
+            m_sqlType = sqlType;
+        }
+
+        /**
+         * Reload value from current row of ResultSet.
+         *
+         * @param rs result set positioned at row.
+         * @param col column index (1-based).
+         * @throws SQLException
+         */
+        public void set(final ResultSet rs, int col) throws SQLException {
+            switch (getFamily(m_sqlType)) {
+                case LONG:
                     m_val = rs.getLong(col);
                     break;
-                case Types.LONGVARCHAR:
-                case Types.CHAR:
+                case STRING:
                     m_val = rs.getString(col);
                     break;
-                case Types.TIMESTAMP:
+                case TIMESTAMP:
                     m_val = rs.getTimestamp(col);
                     break;
-                case Types.REAL:
+                case FLOAT:
                     m_val = rs.getFloat(col);
                     break;
+                case DOUBLE:
+                    m_val = rs.getDouble(col);
+                    break;
+                case BOOLEAN:
+                    m_val = rs.getBoolean(col);
+                    break;
                 default:
-                    assert false;
+                    throw new SQLException(col + ": unsupported type " + m_sqlType);
             }
         }
 
         public SqlVal(final ResultSet rs, String col, int sqlType) throws SQLException {
             m_sqlType = sqlType;
-            switch (m_sqlType) {
-                case Types.INTEGER:
+            switch (getFamily(m_sqlType)) {
+                case LONG:
                     m_val = rs.getLong(col);
                     break;
-                case Types.LONGVARCHAR:
-                case Types.CHAR:
+                case STRING:
                     m_val = rs.getString(col);
                     break;
-                case Types.TIMESTAMP:
+                case TIMESTAMP:
                     m_val = rs.getTimestamp(col);
                     break;
-                case Types.REAL:
+                case FLOAT:
                     m_val = rs.getFloat(col);
                     break;
+                case DOUBLE:
+                    m_val = rs.getDouble(col);
+                    break;
+                case BOOLEAN:
+                    m_val = rs.getBoolean(col);
+                    break;
                 default:
-                    assert false;
+                    throw new SQLException(col + ": unsupported type " + m_sqlType);
             }
         }
 
+        /**
+         * Check if values of type can be read (by family):
+         * INTEGER/BIGINT/SMALLINT/TINYINT as Long;
+         * (N)CHAR/(N)VARCHAR/LONG(N)VARCHAR as String;
+         * TIMESTAMP as Timestamp;
+         * REAL as Float; FLOAT/DOUBLE/DECIMAL/NUMERIC as Double;
+         * BIT/BOOLEAN as Boolean.
+         *
+         * @param sqlType sql.Types value.
+         * @return true if supported.
+         */
+        public static boolean isSupported(int sqlType) {
+            return UNSUPPORTED != getFamily(sqlType);
+        }
+
+        private static int getFamily(int sqlType) {
+            switch (sqlType) {
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.SMALLINT:
+                case Types.TINYINT:
+                    return LONG;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    return STRING;
+                case Types.TIMESTAMP:
+                    return TIMESTAMP;
+                case Types.REAL:
+                    return FLOAT;
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return DOUBLE;
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    return BOOLEAN;
+                default:
+                    return UNSUPPORTED;
+            }
+        }
+
+        private static final int UNSUPPORTED = 0, LONG = 1, STRING = 2, TIMESTAMP = 3,
+                FLOAT = 4, DOUBLE = 5, BOOLEAN = 6;
+
         public Long asLong() {
             return (Long) m_val;
         }
@@ -425,6 +1391,14 @@ public class Model {
             return (Float) m_val;
         }
 
+        public Double asDouble() {
+            return (Double) m_val;
+        }
+
+        public Boolean asBoolean() {
+            return (Boolean) m_val;
+        }
+
         public final static String EMPTY = "";
 
         @Override
@@ -449,7 +1423,18 @@ public class Model {
         }
     }
 
+    /**
+     * Get (per-table) latency stats.
+     *
+     * @return table stats.
+     */
+    public ModelStats.Table getStats() {
+        return m_stats;
+    }
+
     private String m_insertStmt;
+    private String m_insertWithIdStmt;
+    private ModelStats.Table m_stats;
     private Map<String, PosType> m_colInfo = null;
     private List<String> m_colNames = Util.emptyUnmodifiableList();
     private String m_tblName;
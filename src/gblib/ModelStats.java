@@ -0,0 +1,339 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-table counters and latency histograms of Model operations. Recording
+ * is lock-free (a few atomic adds); histograms use log-linear buckets (as
+ * HdrHistogram) with ~6% precision. Each table is registered (once) as an
+ * MXBean: gblib:type=Model,name=TABLE.
+ *
+ * @author gburdell
+ */
+public class ModelStats {
+
+    /**
+     * Instrumented phase of Model operation.
+     */
+    public static enum Phase {
+        SETUP, PREPARE, BIND, EXECUTE, LOCK_WAIT
+    }
+
+    /**
+     * Enable/disable recording (default enabled).
+     *
+     * @param enabled true to record.
+     * @return previous setting.
+     */
+    public static boolean setEnabled(boolean enabled) {
+        boolean was = stEnabled;
+        stEnabled = enabled;
+        return was;
+    }
+
+    public static boolean isEnabled() {
+        return stEnabled;
+    }
+
+    /**
+     * Start time for record(). Cheap (0) when disabled.
+     *
+     * @return start time in nanoseconds.
+     */
+    public static long start() {
+        return stEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Get stats of table (created and registered on first use).
+     *
+     * @param tblName table name.
+     * @return table stats.
+     */
+    public static Table get(String tblName) {
+        Table tbl = stByTable.get(tblName);
+        if (null == tbl) {
+            Table created = new Table(tblName);
+            tbl = stByTable.putIfAbsent(tblName, created);
+            if (null == tbl) {
+                tbl = created;
+                tbl.register();
+            }
+        }
+        return tbl;
+    }
+
+    /**
+     * Snapshot of all tables.
+     *
+     * @return snapshots by phase by table name.
+     */
+    public static Map<String, List<Snapshot>> snapshot() {
+        Map<String, List<Snapshot>> snaps = new TreeMap<>();
+        stByTable.forEach((nm, tbl) -> snaps.put(nm, tbl.getSnapshots()));
+        return snaps;
+    }
+
+    public static void resetAll() {
+        stByTable.values().forEach(Table::reset);
+    }
+
+    /**
+     * JMX view of table stats.
+     */
+    public static interface TableMXBean {
+
+        public String getTableName();
+
+        public List<Snapshot> getSnapshots();
+
+        public void reset();
+    }
+
+    /**
+     * Stats of one table.
+     */
+    public static class Table implements TableMXBean {
+
+        private Table(String tblName) {
+            m_tblName = tblName;
+            for (int i = 0; i < m_hists.length; i++) {
+                m_hists[i] = new Histogram();
+            }
+        }
+
+        /**
+         * Record latency of phase.
+         *
+         * @param phase phase.
+         * @param startNanos from ModelStats.start().
+         */
+        public void record(Phase phase, long startNanos) {
+            if (stEnabled && (0 != startNanos)) {
+                m_hists[phase.ordinal()].record(System.nanoTime() - startNanos);
+            }
+        }
+
+        public Histogram getHistogram(Phase phase) {
+            return m_hists[phase.ordinal()];
+        }
+
+        @Override
+        public String getTableName() {
+            return m_tblName;
+        }
+
+        @Override
+        public List<Snapshot> getSnapshots() {
+            List<Snapshot> snaps = new ArrayList<>(m_hists.length);
+            for (Phase phase : Phase.values()) {
+                snaps.add(new Snapshot(phase.name(), getHistogram(phase)));
+            }
+            return snaps;
+        }
+
+        @Override
+        public void reset() {
+            for (Histogram hist : m_hists) {
+                hist.reset();
+            }
+        }
+
+        private void register() {
+            try {
+                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName("gblib:type=Model,name=" + ObjectName.quote(m_tblName));
+                if (!mbs.isRegistered(name)) {
+                    mbs.registerMBean(this, name);
+                }
+            } catch (JMException | SecurityException ex) {
+                //stats still available via snapshot()
+            }
+        }
+
+        private final String m_tblName;
+        private final Histogram m_hists[] = new Histogram[Phase.values().length];
+    }
+
+    /**
+     * Concurrent log-linear histogram of (nanosecond) values.
+     */
+    public static class Histogram {
+
+        public void record(long nanos) {
+            if (0 > nanos) {
+                nanos = 0;
+            }
+            m_counts.incrementAndGet(getIndex(nanos));
+            m_count.increment();
+            m_sum.add(nanos);
+            m_max.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return m_count.sum();
+        }
+
+        public long getSum() {
+            return m_sum.sum();
+        }
+
+        public long getMax() {
+            return m_max.get();
+        }
+
+        public double getMean() {
+            long n = getCount();
+            return (0 < n) ? ((double) getSum() / n) : 0.0;
+        }
+
+        /**
+         * Get value at percentile (upper bound of bucket).
+         *
+         * @param pct percentile (0..100).
+         * @return value in nanoseconds.
+         */
+        public long getPercentile(double pct) {
+            long counts[] = new long[N_BUCKETS];
+            long total = 0;
+            for (int i = 0; i < N_BUCKETS; i++) {
+                counts[i] = m_counts.get(i);
+                total += counts[i];
+            }
+            if (0 == total) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(total * pct / 100.0));
+            long cum = 0;
+            for (int i = 0; i < N_BUCKETS; i++) {
+                cum += counts[i];
+                if (cum >= rank) {
+                    return Math.min(getUpperBound(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        public void reset() {
+            for (int i = 0; i < N_BUCKETS; i++) {
+                m_counts.set(i, 0);
+            }
+            m_count.reset();
+            m_sum.reset();
+            m_max.reset();
+        }
+
+        static int getIndex(long v) {
+            if (v < LINEAR) {
+                return (int) v;
+            }
+            final int e = 63 - Long.numberOfLeadingZeros(v);
+            return LINEAR + (e - LINEAR_BITS) * SUBS + (int) ((v >>> (e - SUB_BITS)) & (SUBS - 1));
+        }
+
+        static long getUpperBound(int ix) {
+            if (ix < LINEAR) {
+                return ix;
+            }
+            final int e = (ix - LINEAR) / SUBS + LINEAR_BITS;
+            final long sub = (ix - LINEAR) % SUBS;
+            final long lower = (SUBS + sub) << (e - SUB_BITS);
+            return lower + (1L << (e - SUB_BITS)) - 1;
+        }
+
+        private static final int SUB_BITS = 4, SUBS = 1 << SUB_BITS;
+        private static final int LINEAR_BITS = SUB_BITS + 1, LINEAR = 1 << LINEAR_BITS;
+        private static final int N_BUCKETS = LINEAR + (63 - LINEAR_BITS) * SUBS;
+
+        private final AtomicLongArray m_counts = new AtomicLongArray(N_BUCKETS);
+        private final LongAdder m_count = new LongAdder();
+        private final LongAdder m_sum = new LongAdder();
+        private final LongAccumulator m_max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Immutable view of Histogram (in microseconds).
+     */
+    public static class Snapshot {
+
+        public Snapshot(String phase, Histogram hist) {
+            m_phase = phase;
+            m_count = hist.getCount();
+            m_meanMicros = hist.getMean() / 1000.0;
+            m_p50Micros = hist.getPercentile(50) / 1000.0;
+            m_p99Micros = hist.getPercentile(99) / 1000.0;
+            m_maxMicros = hist.getMax() / 1000.0;
+        }
+
+        public String getPhase() {
+            return m_phase;
+        }
+
+        public long getCount() {
+            return m_count;
+        }
+
+        public double getMeanMicros() {
+            return m_meanMicros;
+        }
+
+        public double getP50Micros() {
+            return m_p50Micros;
+        }
+
+        public double getP99Micros() {
+            return m_p99Micros;
+        }
+
+        public double getMaxMicros() {
+            return m_maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                    m_phase, m_count, m_meanMicros, m_p50Micros, m_p99Micros, m_maxMicros);
+        }
+
+        private final String m_phase;
+        private final long m_count;
+        private final double m_meanMicros, m_p50Micros, m_p99Micros, m_maxMicros;
+    }
+
+    private static volatile boolean stEnabled = true;
+    private static final Map<String, Table> stByTable = new ConcurrentHashMap<>();
+}
@@ -23,15 +23,37 @@
  */
 package gblib;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Process command line options.
@@ -56,9 +78,13 @@ public class Options {
         String argName = matcher.group(6);
         for (String opti : new String[]{shortOpt, longOpt}) {
             if (opti != null) {
-                m_byOption.put(opti, new Pair(argName, onOpt));
+                m_byOption.put(opti, new OptHandler(opti, argName, onOpt, true));
             }
         }
+        if (null != longOpt) {
+            //precompute negated form: no per-argument string building
+            m_byOption.put(NO_PFX + longOpt.substring(2), new OptHandler(longOpt, argName, onOpt, false));
+        }
         StringBuilder usage = new StringBuilder(shortOpt);
         if (null != longOpt) {
             usage.append('|').append(longOpt);
@@ -72,41 +98,362 @@ public class Options {
     
     private static final String NO_PFX = "--no-";
     
+    /**
+     * Enable expansion of "@file" arguments: each (non-blank) line of file is
+     * one argument, as is (and may itself be "@file", but not recursively).  Files are read as arguments
+     * are consumed, not up front.
+     * @param expand true to expand.
+     * @return this options.
+     */
+    public Options setArgFileExpansion(final boolean expand) {
+        m_expandArgFiles = expand;
+        return this;
+    }
+    
     /**
      * Process options and arguments.
      * @param argv options and arguments.
      * @return remaining options.
      */
     public Queue<String> process(String argv[]) {
-        Queue<String> opts = new LinkedList<>(Util.arrayToList(argv));
-        while (! opts.isEmpty()) {
-            String opt = opts.peek();
-            if ('-' == opt.charAt(0)) {
-                boolean isTrue = true;
-                if (opt.startsWith(NO_PFX)) {
-                    isTrue = false;
-                    opt = "--" + opt.substring(NO_PFX.length());
+        try (ArgIterator args = new ArgIterator(Arrays.asList(argv).iterator(), m_expandArgFiles)) {
+            Queue<String> rest = new ArrayDeque<>();
+            String first = processOptions(args);
+            if (null != first) {
+                rest.add(first);
+                args.forEachRemaining(rest::add);
+            }
+            return rest;
+        }
+    }
+    
+    /**
+     * Process options from a (streaming) argument source.
+     * Leading options are processed immediately; the remaining (positional)
+     * arguments are delivered lazily, as source is read.
+     * @param args options and arguments.
+     * @return lazy iterator over remaining arguments.
+     */
+    public Iterator<String> process(final Iterator<String> args) {
+        final ArgIterator iter = new ArgIterator(args, m_expandArgFiles);
+        final String first;
+        try {
+            first = processOptions(iter);
+        } catch (RuntimeException ex) {
+            iter.close();
+            throw ex;
+        }
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return (null != m_first) || iter.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (null != m_first) {
+                    final String next = m_first;
+                    m_first = null;
+                    return next;
                 }
-                Pair<String, Consumer> onOpt = m_byOption.get(opt);
-                if (null != onOpt) {
-                    opts.remove();
-                    if (null != onOpt.v1) {
-                        if (! opts.isEmpty()) {
-                            onOpt.v2.accept(opts.remove());
-                        } else {
-                            throw new UsageException(opt + ": missing argument '" + onOpt.v1 + "'");
+                return iter.next();
+            }
+            
+            private String m_first = first;
+        };
+    }
+    
+    /**
+     * Process options from a (streaming) argument source.
+     * @param args options and arguments.
+     * @return lazy stream of remaining arguments.
+     */
+    public Stream<String> stream(final Iterator<String> args) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(process(args), Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
+    
+    /**
+     * Read (lazily) arguments separated by sep.  Empty arguments are skipped
+     * and the reader is closed once exhausted.  Arguments are trimmed only
+     * when separated by newline (so a trailing \r is dropped); otherwise
+     * they are returned exactly as read.
+     * @param in argument source.
+     * @param sep argument separator.
+     * @return iterator over arguments.
+     */
+    public static Iterator<String> split(final Reader in, final char sep) {
+        return new SplitIterator(in, sep, '\n' == sep);
+    }
+    
+    /**
+     * Read (lazily) NUL-separated arguments: as produced by "find -print0".
+     * Arguments are decoded as UTF-8 (see nulSeparated(InputStream,Charset)).
+     * @param in argument source (e.g., System.in).
+     * @return iterator over arguments.
+     */
+    public static Iterator<String> nulSeparated(final InputStream in) {
+        return nulSeparated(in, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Read (lazily) NUL-separated arguments: as produced by "find -print0".
+     * Input is split on 0x00 bytes, then each argument is decoded (so cs must
+     * not use 0x00 within a character: e.g., not UTF-16).  Arguments are not
+     * trimmed.  Invalid byte sequences (in cs) are replaced, so only valid
+     * input round-trips: use ISO_8859_1 to get each byte as one char.
+     * @param in argument source (e.g., System.in).
+     * @param cs charset of arguments.
+     * @return iterator over arguments.
+     */
+    public static Iterator<String> nulSeparated(final InputStream in, final Charset cs) {
+        return new NulIterator(in, cs);
+    }
+    
+    /**
+     * Read (lazily) arguments from response file: one argument per line.
+     * @param file response file.
+     * @return iterator over arguments.
+     * @throws IOException if file cannot be opened.
+     */
+    public static Iterator<String> responseFile(final Path file) throws IOException {
+        return split(Files.newBufferedReader(file, StandardCharsets.UTF_8), '\n');
+    }
+    
+    /**
+     * Iterate over arguments separated by single character.
+     */
+    private static class SplitIterator implements Iterator<String> {
+        private SplitIterator(final Reader in, final char sep, final boolean trim) {
+            m_in = (in instanceof BufferedReader) ? in : new BufferedReader(in);
+            m_sep = sep;
+            m_trim = trim;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while ((null == m_next) && (null != m_in)) {
+                    final int c = m_in.read();
+                    if ((0 > c) || (m_sep == c)) {
+                        final String arg = m_trim
+                                ? m_buf.toString().trim() : m_buf.toString();
+                        m_buf.setLength(0);
+                        if (!arg.isEmpty()) {
+                            m_next = arg;
+                        }
+                        if (0 > c) {
+                            m_in.close();
+                            m_in = null;
                         }
                     } else {
-                        onOpt.v2.accept(isTrue);
+                        m_buf.append((char) c);
                     }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return null != m_next;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String next = m_next;
+            m_next = null;
+            return next;
+        }
+
+        private Reader m_in;
+        private final char m_sep;
+        private final boolean m_trim;
+        private final StringBuilder m_buf = new StringBuilder();
+        private String m_next = null;
+    }
+    
+    /**
+     * Iterate over NUL-separated arguments, split before decoding.
+     */
+    private static class NulIterator implements Iterator<String> {
+        private NulIterator(final InputStream in, final Charset cs) {
+            m_in = (in instanceof BufferedInputStream) ? in : new BufferedInputStream(in);
+            m_cs = cs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while ((null == m_next) && (null != m_in)) {
+                    final int b = m_in.read();
+                    if (0 >= b) {
+                        if (0 < m_buf.size()) {
+                            m_next = new String(m_buf.toByteArray(), m_cs);
+                            m_buf.reset();
+                        }
+                        if (0 > b) {
+                            m_in.close();
+                            m_in = null;
+                        }
+                    } else {
+                        m_buf.write(b);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return null != m_next;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String next = m_next;
+            m_next = null;
+            return next;
+        }
+
+        private InputStream m_in;
+        private final Charset m_cs;
+        private final ByteArrayOutputStream m_buf = new ByteArrayOutputStream();
+        private String m_next = null;
+    }
+    
+    /**
+     * Process leading options.
+     * @param args options and arguments.
+     * @return first non-option argument (or null if none).
+     */
+    private String processOptions(final Iterator<String> args) {
+        while (args.hasNext()) {
+            final String opt = args.next();
+            if (opt.isEmpty() || ('-' != opt.charAt(0))) {
+                return opt;
+            }
+            final OptHandler onOpt = m_byOption.get(opt);
+            if (null == onOpt) {
+                throw new UsageException(opt + ": invalid option");
+            }
+            if (null != onOpt.m_argName) {
+                if (args.hasNext()) {
+                    onOpt.m_onOpt.accept(args.next());
                 } else {
-                    throw new UsageException(opt + ": invalid option");
+                    throw new UsageException(onOpt.m_opt + ": missing argument '" + onOpt.m_argName + "'");
                 }
             } else {
-                break;
+                onOpt.m_onOpt.accept(onOpt.m_isTrue);
             }
         }
-        return opts;
+        return null;
+    }
+    
+    /**
+     * Iterate over arguments, (lazily) expanding "@file". Open files are
+     * closed once read, on error, or by close().
+     */
+    private static class ArgIterator implements Iterator<String>, AutoCloseable {
+        private ArgIterator(final Iterator<String> argv, final boolean expand) {
+            m_argv = argv;
+            m_expand = expand;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (null == m_next) {
+                    if (!m_readers.isEmpty()) {
+                        final String line = m_readers.peek().readLine();
+                        if (null == line) {
+                            m_files.pop();
+                            m_readers.pop().close();
+                        } else if (!line.trim().isEmpty()) {
+                            push(line);
+                        }
+                    } else if (m_argv.hasNext()) {
+                        push(m_argv.next());
+                    } else {
+                        return false;
+                    }
+                }
+            } catch (IOException ex) {
+                close();
+                throw new UncheckedIOException(ex);
+            } catch (RuntimeException ex) {
+                close();
+                throw ex;
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String next = m_next;
+            m_next = null;
+            return next;
+        }
+
+        @Override
+        public void close() {
+            while (!m_readers.isEmpty()) {
+                try {
+                    m_readers.pop().close();
+                } catch (IOException ex) {
+                    //ignore: only read
+                }
+            }
+            m_files.clear();
+        }
+        
+        private void push(final String arg) {
+            if (m_expand && (1 < arg.length()) && ('@' == arg.charAt(0))) {
+                final Path file;
+                try {
+                    file = Paths.get(arg.substring(1)).toRealPath();
+                    if (m_files.contains(file)) {
+                        throw new UsageException(arg + ": argument file includes itself");
+                    }
+                    m_readers.push(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+                    m_files.push(file);
+                } catch (IOException | InvalidPathException ex) {
+                    throw new UsageException(arg + ": cannot read argument file (" + ex.getMessage() + ")");
+                }
+            } else {
+                m_next = arg;
+            }
+        }
+
+        private final Iterator<String> m_argv;
+        private final boolean m_expand;
+        private final Deque<BufferedReader> m_readers = new ArrayDeque<>();
+        /**
+         * Files of m_readers (to detect cycle).
+         */
+        private final Deque<Path> m_files = new ArrayDeque<>();
+        private String m_next = null;
+    }
+    
+    /**
+     * Option handler: consumer and (precomputed) value for flag.
+     */
+    private static class OptHandler {
+        private OptHandler(final String opt, final String argName, final Consumer onOpt, final boolean isTrue) {
+            m_opt = opt;
+            m_argName = argName;
+            m_onOpt = onOpt;
+            m_isTrue = isTrue;
+        }
+        
+        private final String m_opt;
+        private final String m_argName;
+        private final Consumer m_onOpt;
+        private final boolean m_isTrue;
     }
     
     public String getUsage() {
@@ -137,10 +484,11 @@ public class Options {
     }
     
     /**
-     * Map of pair: 1) arg name (or null); 2) consumer, by soft/long option.
+     * Handler by short/long/negated long option.
      */
-    private final Map<String, Pair<String, Consumer>> m_byOption = new HashMap<>();
+    private final Map<String, OptHandler> m_byOption = new HashMap<>();
     private final List<Pair<String, String>> m_optDescriptions = new LinkedList<>();
+    private boolean m_expandArgFiles = false;
     
     private static final Pattern ADD_REX = Pattern.compile("(\\-[^\\|$\\s]+)((\\|)(\\-\\-[^$\\s]+))?(\\s+([\\S]+))?");
 }
@@ -23,7 +23,7 @@
 package gblib;
 
 import java.util.StringTokenizer;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,7 +42,7 @@ public class Pair<T1, T2> {
     public static List<Pair<String, String>> factory(
             List<String> keyVals, String delim) {
         List<Pair<String, String>> rval
-                = new LinkedList<>();
+                = new ArrayList<>(keyVals.size());
         for (String kv : keyVals) {
             if (kv.isEmpty()) {
                 rval.add(new Pair<>("",null));
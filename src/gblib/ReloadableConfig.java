@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Configuration loaded from file (see Config.load) and reloaded when the file
+ * changes. Each (re)load publishes a new immutable Config.Snapshot, so readers
+ * always see a consistent view without locking. A file which fails to load
+ * leaves the current snapshot in place.
+ *
+ * @author gburdell
+ */
+public class ReloadableConfig implements AutoCloseable {
+
+    /**
+     * Load configuration from file. Call start() to watch for changes.
+     *
+     * @param file configuration file.
+     * @return reloadable configuration.
+     * @throws IOException if initial load fails.
+     */
+    public static ReloadableConfig create(final Path file) throws IOException {
+        return new ReloadableConfig(file.toAbsolutePath().normalize());
+    }
+
+    private ReloadableConfig(final Path file) throws IOException {
+        m_file = file;
+        reload();
+    }
+
+    /**
+     * Get current snapshot.
+     *
+     * @return current snapshot.
+     */
+    public Config.Snapshot get() {
+        return m_snapshot.get();
+    }
+
+    public Path getFile() {
+        return m_file;
+    }
+
+    public ReloadableConfig setOnReload(final Consumer<Config.Snapshot> onReload) {
+        m_onReload = onReload;
+        return this;
+    }
+
+    /**
+     * Set handler for failed (re)load while watching.
+     *
+     * @param onError error handler.
+     * @return this configuration.
+     */
+    public ReloadableConfig setOnError(final Consumer<Exception> onError) {
+        m_onError = onError;
+        return this;
+    }
+
+    /**
+     * Load file and publish new snapshot.
+     *
+     * @return new snapshot.
+     * @throws IOException if file cannot be read.
+     */
+    public Config.Snapshot reload() throws IOException {
+        final Config.Snapshot snapshot = Config.load(m_file).snapshot();
+        m_snapshot.set(snapshot);
+        final Consumer<Config.Snapshot> onReload = m_onReload;
+        if (null != onReload) {
+            onReload.accept(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Start (daemon) thread watching file for changes.
+     *
+     * @return this configuration.
+     * @throws IOException if file cannot be watched.
+     */
+    public synchronized ReloadableConfig start() throws IOException {
+        if (null == m_watcher) {
+            m_watcher = FileSystems.getDefault().newWatchService();
+            m_file.getParent().register(m_watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            final WatchService watcher = m_watcher;
+            final Thread thread = new Thread(() -> watch(watcher), "ReloadableConfig:" + m_file.getFileName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * Stop watching file.
+     */
+    @Override
+    public synchronized void close() {
+        if (null != m_watcher) {
+            try {
+                m_watcher.close();
+            } catch (IOException ex) {
+                //ignore: nothing more to watch
+            }
+            m_watcher = null;
+        }
+    }
+
+    private void watch(final WatchService watcher) {
+        final Path name = m_file.getFileName();
+        try {
+            while (true) {
+                final WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= name.equals(event.context())
+                            || (StandardWatchEventKinds.OVERFLOW == event.kind());
+                }
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException ex) {
+                        final Consumer<Exception> onError = m_onError;
+                        if (null != onError) {
+                            onError.accept(ex);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            //stopped
+        }
+    }
+
+    private final Path m_file;
+    private final AtomicReference<Config.Snapshot> m_snapshot = new AtomicReference<>();
+    private volatile Consumer<Config.Snapshot> m_onReload = null;
+    private volatile Consumer<Exception> m_onError = null;
+    private WatchService m_watcher = null;
+}
@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 gburdell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package gblib;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-level cache of table and column (type) information, shared by Model
+ * instances. All tables/columns are loaded with a single query; the PosType
+ * map of a table is built (once) on first use.
+ *
+ * @author gburdell
+ */
+public class SchemaCache {
+
+    /**
+     * Get (shared) cache for connection source. First call loads schema.
+     *
+     * @param conn connection source.
+     * @return schema cache.
+     * @throws SQLException
+     */
+    public static SchemaCache get(final Model.IConnection conn) throws SQLException {
+        SchemaCache cache = stCacheByConn.get(conn);
+        if (null == cache) {
+            synchronized (stCacheByConn) {
+                cache = stCacheByConn.get(conn);
+                if (null == cache) {
+                    cache = new SchemaCache(conn);
+                    cache.refresh();
+                    stCacheByConn.put(conn, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Get (shared) cache for connection source, warm started from file. If
+     * file does not exist, schema is loaded from database and saved to file.
+     *
+     * @param conn connection source.
+     * @param file persisted schema.
+     * @return schema cache.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public static SchemaCache get(final Model.IConnection conn, final Path file) throws SQLException, IOException {
+        SchemaCache cache = stCacheByConn.get(conn);
+        if (null == cache) {
+            synchronized (stCacheByConn) {
+                cache = stCacheByConn.get(conn);
+                if (null == cache) {
+                    cache = new SchemaCache(conn);
+                    if (Files.exists(file)) {
+                        cache.load(file);
+                    } else {
+                        cache.refresh();
+                        cache.save(file);
+                    }
+                    stCacheByConn.put(conn, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Drop (shared) cache for connection source. Next get() reloads.
+     *
+     * @param conn connection source.
+     */
+    public static void invalidate(final Model.IConnection conn) {
+        stCacheByConn.remove(conn);
+    }
+
+    private SchemaCache(final Model.IConnection conn) {
+        m_conn = conn;
+    }
+
+    public Model.IConnection getConnection() {
+        return m_conn;
+    }
+
+    /**
+     * Get table info.
+     *
+     * @param tblName table name (case insensitive).
+     * @return table info or null if no such table.
+     */
+    public Table getTable(final String tblName) {
+        return m_tblByName.get(tblName.toUpperCase());
+    }
+
+    public List<String> getTableNames() {
+        List<String> names = new ArrayList<>(m_tblByName.size());
+        m_tblByName.values().forEach(t -> names.add(t.getName()));
+        return names;
+    }
+
+    private static final String ALL_COLTYPES
+            = "select distinct table_name, column_name, data_type, ordinal_position"
+            + " from information_schema.columns order by table_name, ordinal_position";
+
+    /**
+     * (Re)load all tables and columns from database.
+     *
+     * @throws SQLException
+     */
+    public void refresh() throws SQLException {
+        Map<String, Table> tblByName = new LinkedHashMap<>();
+        try (Connection conn = m_conn.getConnection();
+                Statement stmt = Model.createStreamingStatement(conn, Model.DEFAULT_FETCH_SIZE);
+                ResultSet rs = stmt.executeQuery(ALL_COLTYPES)) {
+            while (rs.next()) {
+                addColumn(tblByName, rs.getString(1), rs.getString(2), rs.getString(3));
+            }
+        }
+        m_tblByName = tblByName;
+    }
+
+    /**
+     * Save schema to file: one tab separated table, column, type per line.
+     *
+     * @param file persisted schema.
+     * @throws IOException
+     */
+    public void save(final Path file) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+        final Path tmp = Files.createTempFile(parent, ".schema", ".tmp");
+        try (BufferedWriter wr = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Table tbl : m_tblByName.values()) {
+                for (Pair<String, String> col : tbl.m_cols) {
+                    wr.append(tbl.getName()).append(SEP).append(col.v1).append(SEP).append(col.v2);
+                    wr.newLine();
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load schema from file (as written by save).
+     *
+     * @param file persisted schema.
+     * @throws IOException
+     */
+    public void load(final Path file) throws IOException {
+        Map<String, Table> tblByName = new LinkedHashMap<>();
+        try (BufferedReader rdr = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while (null != (line = rdr.readLine())) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String toks[] = line.split(SEP);
+                if (3 != toks.length) {
+                    throw new IOException(file + ": invalid line '" + line + "'");
+                }
+                addColumn(tblByName, toks[0], toks[1], toks[2]);
+            }
+        }
+        m_tblByName = tblByName;
+    }
+
+    private static void addColumn(final Map<String, Table> tblByName, final String tblName, final String colNm, final String typeNm) {
+        final String key = tblName.toUpperCase();
+        Table tbl = tblByName.get(key);
+        if (null == tbl) {
+            tbl = new Table(tblName);
+            tblByName.put(key, tbl);
+        }
+        tbl.m_cols.add(new Pair<>(colNm.toUpperCase(), typeNm.toUpperCase()));
+    }
+
+    /**
+     * Table (case-sensitive) name and column info.
+     */
+    public static class Table {
+
+        private Table(final String name) {
+            m_name = name;
+        }
+
+        /**
+         * Get case-sensitive table name.
+         *
+         * @return table name.
+         */
+        public String getName() {
+            return m_name;
+        }
+
+        /**
+         * Get column position/type by (upper case) column name, in column
+         * order.
+         *
+         * @return unmodifiable column info.
+         */
+        public Map<String, Model.PosType> getColumnInfo() {
+            Map<String, Model.PosType> colInfo = m_colInfo;
+            if (null == colInfo) {
+                colInfo = new LinkedHashMap<>(); //keep insert/key order
+                int coli = 1;
+                for (Pair<String, String> col : m_cols) {
+                    if (!colInfo.containsKey(col.v1)) {
+                        colInfo.put(col.v1, new Model.PosType(coli++, col.v2));
+                    }
+                }
+                m_colInfo = colInfo = Collections.unmodifiableMap(colInfo);
+            }
+            return colInfo;
+        }
+
+        private final String m_name;
+        private final List<Pair<String, String>> m_cols = new ArrayList<>();
+        private volatile Map<String, Model.PosType> m_colInfo = null;
+    }
+
+    private static final String SEP = "\t";
+    private static final Map<Model.IConnection, SchemaCache> stCacheByConn = new ConcurrentHashMap<>();
+
+    private final Model.IConnection m_conn;
+    private volatile Map<String, Table> m_tblByName = new HashMap<>();
+}
@@ -23,27 +23,44 @@
  */
 package gblib;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import static gblib.MessageMgr.message;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import static java.util.Objects.nonNull;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class Util {
     public static <T> List<T> emptyUnmodifiableList() {
-        return Collections.unmodifiableList(new LinkedList<>());
+        return Collections.emptyList();
     }
     
     public static <K,V> Map<K,V> emptyUnmodifiableMap() {
@@ -95,6 +112,7 @@ public class Util {
     
     /**
      * Read InputStream and convert to string.
+     * Contents are decoded (UTF-8) incrementally: no intermediate byte copies.
      *
      * @param ins input stream.
      * @param n size of internal buffer.
@@ -102,69 +120,225 @@ public class Util {
      * @throws java.io.IOException
      */
     public static String toString(InputStream ins, final int n) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[n];
-        while ((nRead = ins.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
-        }
-        buffer.flush();
-        return new String(buffer.toByteArray(), "UTF-8");
+        return toCharSequence(ins, n).toString();
     }
 
     public static String toString(InputStream ins) throws IOException {
         return toString(ins, 16384);
     }
 
+    /**
+     * Read exactly length bytes (e.g., known file or resource size) and
+     * convert (UTF-8) to string.
+     *
+     * @param ins input stream.
+     * @param length number of bytes to read.
+     * @return contents of stream.
+     * @throws java.io.IOException if fewer than length bytes available,
+     * or length is too large for a String.
+     */
+    public static String toStringExact(InputStream ins, final long length) throws IOException {
+        invariant(0 <= length);
+        if (MAX_ARRAY_SIZE < length) {
+            throw new IOException("Cannot read " + length + " bytes into String (max " + MAX_ARRAY_SIZE + ")");
+        }
+        final byte data[] = new byte[(int) length];
+        for (int off = 0, nRead; off < data.length; off += nRead) {
+            nRead = ins.read(data, off, data.length - off);
+            if (0 > nRead) {
+                throw new EOFException("Expected " + length + " bytes, got " + off);
+            }
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Largest array the VM reliably allocates.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    public static String toString(final Path file) throws IOException {
+        try (InputStream ins = Files.newInputStream(file)) {
+            return toStringExact(ins, Files.size(file));
+        }
+    }
+
+    /**
+     * Read InputStream and decode (UTF-8) into character sequence,
+     * without the copy to final String.
+     *
+     * @param ins input stream.
+     * @param n size of internal buffer (in chars).
+     * @return contents of stream.
+     * @throws java.io.IOException
+     */
+    public static CharSequence toCharSequence(InputStream ins, final int n) throws IOException {
+        final Reader rdr = new InputStreamReader(ins, StandardCharsets.UTF_8);
+        final StringBuilder s = new StringBuilder(Math.max(n, ins.available()));
+        final char data[] = new char[n];
+        for (int nRead; 0 <= (nRead = rdr.read(data, 0, data.length)); ) {
+            s.append(data, 0, nRead);
+        }
+        return s;
+    }
+
+    public static CharSequence toCharSequence(InputStream ins) throws IOException {
+        return toCharSequence(ins, 16384);
+    }
+
     public static boolean isUpperCase(final String s) {
         return s.equals(s.toUpperCase());
     }
 
+    /**
+     * Escape character: newline, tab, return, backslash and quotes are
+     * escaped (with backslash); any other character is returned as is.
+     *
+     * @param c character to escape.
+     * @return escaped character.
+     */
     public static String escape(final char c) {
-        String s = "";
-        switch (c) {
-            case '\n':
-                s = "\\n";
-                break;
-            case '\t':
-                s = "\\t";
-                break;
-            case '\\':
-                s = "\\\\";
-                break;
-            default:
-                s = Character.toString(c);
+        if (c < ASCII.length) {
+            return (null != ESCAPES[c]) ? ESCAPES[c] : ASCII[c];
         }
-        return s;
+        return Character.toString(c);
     }
 
+    /**
+     * Escape string (see escape(char)).
+     *
+     * @param s string to escape.
+     * @return s, if nothing to escape; else escaped string.
+     */
     public static String escape(final String s) {
-        return s.replace("\n", "\\n");
+        final int n = s.length();
+        for (int i = 0; i < n; i++) {
+            if (isEscaped(s.charAt(i))) {
+                final StringBuilder buf = new StringBuilder(n + 16);
+                buf.append(s, 0, i);
+                return escape(s, i, buf).toString();
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Append escaped string (see escape(char)).
+     *
+     * @param s string to escape.
+     * @param buf where to append escaped s.
+     * @return buf.
+     */
+    public static StringBuilder escape(final CharSequence s, final StringBuilder buf) {
+        return escape(s, 0, buf);
+    }
+
+    private static StringBuilder escape(final CharSequence s, int from, final StringBuilder buf) {
+        final int n = s.length();
+        for (int i = from; i < n; i++) {
+            final char c = s.charAt(i);
+            if (isEscaped(c)) {
+                buf.append(s, from, i).append(ESCAPES[c]);
+                from = i + 1;
+            }
+        }
+        return buf.append(s, from, n);
+    }
+
+    private static boolean isEscaped(final char c) {
+        return (c < ESCAPES.length) && (null != ESCAPES[c]);
+    }
+
+    /**
+     * Escape only newlines (as used in messages).
+     *
+     * @param s string to escape.
+     * @return s, if no newlines; else escaped string.
+     */
+    public static String escapeNewlines(final String s) {
+        int i = s.indexOf('\n');
+        if (0 > i) {
+            return s;
+        }
+        final StringBuilder buf = new StringBuilder(s.length() + 8);
+        int from = 0;
+        for (; 0 <= i; from = i + 1, i = s.indexOf('\n', from)) {
+            buf.append(s, from, i).append("\\n");
+        }
+        return buf.append(s, from, s.length()).toString();
     }
 
+    /**
+     * Unescape character (see escape(char)).
+     *
+     * @param s backslash and escaped character.
+     * @return unescaped character.
+     */
     public static char unescape(final String s) {
         invariant((2 == s.length()) && (s.charAt(0) == '\\'));
-        char c = 0;
-        switch (s) {
-            case "\\n":
-                c = '\n';
-                break;
-            case "\\r":
-                c = '\r';
-                break;
-            case "\\'":
-                c = '\'';
-                break;
-            case "\\t":
-                c = '\t';
-                break;
-            case "\\":
-                c = '\\';
-                break;
+        final int c = unescape(s.charAt(1));
+        invariant(0 <= c);
+        return (char) c;
+    }
+
+    /**
+     * Unescape string (inverse of escape(String)).
+     * Unknown escapes (and trailing backslash) are kept as is.
+     *
+     * @param s string to unescape.
+     * @return s, if nothing to unescape; else unescaped string.
+     */
+    public static String unescapeAll(final String s) {
+        int i = s.indexOf('\\');
+        if (0 > i) {
+            return s;
+        }
+        final int n = s.length();
+        final StringBuilder buf = new StringBuilder(n);
+        buf.append(s, 0, i);
+        for (; i < n; i++) {
+            final char c = s.charAt(i);
+            final int uc = (('\\' == c) && (i + 1 < n)) ? unescape(s.charAt(i + 1)) : -1;
+            if (0 <= uc) {
+                buf.append((char) uc);
+                i++;
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    private static int unescape(final char c) {
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case '\\':
+            case '\'':
+            case '"':
+                return c;
             default:
-                invariant(false);
+                return -1;
         }
-        return c;
+    }
+
+    private static final String ASCII[] = new String[128];
+    private static final String ESCAPES[] = new String[128];
+
+    static {
+        for (char c = 0; c < ASCII.length; c++) {
+            ASCII[c] = String.valueOf(c).intern();
+        }
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\''] = "\\'";
+        ESCAPES['"'] = "\\\"";
     }
 
     public static String stripDoubleQuotes(final String s) {
@@ -276,14 +450,16 @@ public class Util {
 
     /**
      * Add only new elements to list.
+     * Membership is tracked in a hash set: linear (not n*m) cost.
      *
      * @param <T> type of list element.
      * @param to list to update with only new elements.
      * @param from list to get new elements from.
      */
     public static <T> void addAllNoDups(List<T> to, List<T> from) {
+        final Set<T> seen = new HashSet<>(to);
         for (T ele : from) {
-            if (!to.contains(ele)) {
+            if (seen.add(ele)) {
                 to.add(ele);
             }
         }
@@ -291,18 +467,199 @@ public class Util {
 
     private final static String m_nl = System.getProperty("line.separator");
 
-    public static int streamCopy(BufferedInputStream from, BufferedOutputStream to) throws IOException {
-        final int bufSz = 2048;
-        byte buf[] = new byte[bufSz];
-        int tlCnt = 0, cnt = 0;
-        while (0 <= (cnt = from.read(buf, 0, bufSz))) {
-            tlCnt += cnt;
+    public static long streamCopy(BufferedInputStream from, BufferedOutputStream to) throws IOException {
+        return streamCopy(from, to, null);
+    }
+
+    /**
+     * Copy stream to stream.
+     * File streams are copied channel to channel (see channelCopy);
+     * otherwise through a (reused, per thread) buffer.
+     *
+     * @param from stream to copy from (until end of stream).
+     * @param to stream to copy to (flushed once done).
+     * @param progress optional (may be null) progress/throughput callback.
+     * @return number of bytes copied.
+     * @throws IOException on read/write error.
+     */
+    public static long streamCopy(InputStream from, OutputStream to, CopyProgress progress) throws IOException {
+        final FileChannel src = getFileChannel(from), dest = getFileChannel(to);
+        if ((null != src) && (null != dest)) {
+            return channelCopy(src, dest, progress);
+        }
+        final long start = System.nanoTime();
+        final byte buf[] = stCopyBuf.get();
+        long tlCnt = 0;
+        for (int cnt; 0 <= (cnt = from.read(buf, 0, buf.length)); ) {
             to.write(buf, 0, cnt);
+            tlCnt += cnt;
+            if (null != progress) {
+                progress.progress(tlCnt, System.nanoTime() - start);
+            }
         }
         to.flush();
         return tlCnt;
     }
 
+    /**
+     * Copy socket to stream.
+     * A socket with a (blocking) channel (i.e., opened by SocketChannel)
+     * copied to a file stream is copied channel to channel (see
+     * channelCopy); otherwise as streamCopy(InputStream,...).
+     *
+     * @param from socket to copy from (until end of stream).
+     * @param to stream to copy to (flushed once done).
+     * @param progress optional (may be null) progress/throughput callback.
+     * @return number of bytes copied.
+     * @throws IOException on read/write error.
+     */
+    public static long streamCopy(Socket from, OutputStream to, CopyProgress progress) throws IOException {
+        final SocketChannel src = from.getChannel();
+        final FileChannel dest = getFileChannel(to);
+        if ((null != src) && src.isBlocking() && (null != dest)) {
+            return channelCopy(src, dest, progress);
+        }
+        return streamCopy(from.getInputStream(), to, progress);
+    }
+
+    /**
+     * Copy stream to socket.
+     * A file stream copied to a socket with a (blocking) channel (i.e.,
+     * opened by SocketChannel) is copied channel to channel (sendfile);
+     * otherwise as streamCopy(...,OutputStream,...).
+     *
+     * @param from stream to copy from (until end of stream).
+     * @param to socket to copy to.
+     * @param progress optional (may be null) progress/throughput callback.
+     * @return number of bytes copied.
+     * @throws IOException on read/write error.
+     */
+    public static long streamCopy(InputStream from, Socket to, CopyProgress progress) throws IOException {
+        final FileChannel src = getFileChannel(from);
+        final SocketChannel dest = to.getChannel();
+        if ((null != src) && (null != dest) && dest.isBlocking()) {
+            return channelCopy(src, dest, progress);
+        }
+        return streamCopy(from, to.getOutputStream(), progress);
+    }
+
+    /**
+     * Get channel of file stream.
+     * Only exact FileInputStream is trusted: (Java 8) socket streams
+     * subclass it without a channel.
+     *
+     * @return channel or null.
+     */
+    private static FileChannel getFileChannel(InputStream ins) {
+        return ((null != ins) && (FileInputStream.class == ins.getClass()))
+                ? ((FileInputStream) ins).getChannel() : null;
+    }
+
+    private static FileChannel getFileChannel(OutputStream os) {
+        return ((null != os) && (FileOutputStream.class == os.getClass()))
+                ? ((FileOutputStream) os).getChannel() : null;
+    }
+
+    /**
+     * Copy channel to channel.
+     * If either channel is a FileChannel, transferTo/transferFrom is used,
+     * so the kernel can copy directly (e.g., sendfile to socket);
+     * otherwise copy through a (reused, per thread) direct buffer.
+     *
+     * @param from channel to copy from (until end of stream).
+     * @param to channel to copy to.
+     * @param progress optional (may be null) progress/throughput callback.
+     * @return number of bytes copied.
+     * @throws IOException on read/write error.
+     */
+    public static long channelCopy(ReadableByteChannel from, WritableByteChannel to, CopyProgress progress) throws IOException {
+        final long start = System.nanoTime();
+        long tlCnt = 0;
+        if (from instanceof FileChannel) {
+            final FileChannel src = (FileChannel) from;
+            for (long pos = src.position(), size = src.size(), cnt; pos < size; pos += cnt) {
+                cnt = src.transferTo(pos, Math.min(TRANSFER_CHUNK, size - pos), to);
+                if (0 >= cnt) {
+                    break;  //truncated underneath us
+                }
+                tlCnt += cnt;
+                if (null != progress) {
+                    progress.progress(tlCnt, System.nanoTime() - start);
+                }
+            }
+            src.position(src.position() + tlCnt);
+        } else if (to instanceof FileChannel) {
+            final FileChannel dest = (FileChannel) to;
+            long pos = dest.position();
+            for (long cnt; 0 < (cnt = dest.transferFrom(from, pos, TRANSFER_CHUNK)); pos += cnt) {
+                tlCnt += cnt;
+                if (null != progress) {
+                    progress.progress(tlCnt, System.nanoTime() - start);
+                }
+            }
+            //transferFrom does not advance position
+            dest.position(pos);
+            //transferFrom returns 0 at end of stream, but also if from is
+            //non-blocking with nothing available: finish with buffer copy.
+            tlCnt += bufferCopy(from, to, tlCnt, start, progress);
+        } else {
+            tlCnt = bufferCopy(from, to, 0, start, progress);
+        }
+        return tlCnt;
+    }
+
+    public static long channelCopy(ReadableByteChannel from, WritableByteChannel to) throws IOException {
+        return channelCopy(from, to, null);
+    }
+
+    private static long bufferCopy(ReadableByteChannel from, WritableByteChannel to,
+            final long prevCnt, final long start, CopyProgress progress) throws IOException {
+        final ByteBuffer buf = stDirectCopyBuf.get();
+        buf.clear();
+        long tlCnt = 0;
+        while (0 <= from.read(buf)) {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                tlCnt += to.write(buf);
+            }
+            buf.clear();
+            if (null != progress) {
+                progress.progress(prevCnt + tlCnt, System.nanoTime() - start);
+            }
+        }
+        return tlCnt;
+    }
+
+    /**
+     * Callback for (long) copy progress.
+     */
+    public static interface CopyProgress {
+
+        /**
+         * Report progress.
+         * @param bytes bytes copied so far.
+         * @param elapsedNanos time since copy started.
+         */
+        public void progress(long bytes, long elapsedNanos);
+
+        /**
+         * Get throughput.
+         * @param bytes bytes copied.
+         * @param elapsedNanos elapsed time.
+         * @return throughput (MB/sec).
+         */
+        public static double getMBPerSec(long bytes, long elapsedNanos) {
+            return (0 < elapsedNanos) ? ((bytes * 1.0e9) / (elapsedNanos * 1024.0 * 1024.0)) : 0.0;
+        }
+    }
+
+    private static final int COPY_BUF_SIZE = 256 * 1024;
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final ThreadLocal<byte[]> stCopyBuf
+            = ThreadLocal.withInitial(() -> new byte[COPY_BUF_SIZE]);
+    private static final ThreadLocal<ByteBuffer> stDirectCopyBuf
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(COPY_BUF_SIZE));
+
     public static String nl() {
         return m_nl;
     }
@@ -391,17 +748,66 @@ public class Util {
         return toCommaSeparatedString(eles);
     }
 
+    public static <T> Appendable toCSV(final Appendable out, final Iterable<T> eles) throws IOException {
+        return join(out, eles, ",");
+    }
+
+    /**
+     * Join elements separated by sep.
+     * Buffer is presized from element lengths (CharSequence elements)
+     * or a small estimate (other elements, e.g. numbers): the buffer grows
+     * as needed.
+     *
+     * @param <T> element type (must has toString() method).
+     * @param eles elements to join.
+     * @param sep separator.
+     * @return joined elements.
+     */
     public static <T> String join(Collection<T> eles, String sep) {
-         StringBuilder s = new StringBuilder();
+        if ((null == eles) || eles.isEmpty()) {
+            return "";
+        }
+        long capacity = (long) (eles.size() - 1) * sep.length();
+        for (T ele : eles) {
+            capacity += (ele instanceof CharSequence) ? ((CharSequence) ele).length() : JOIN_ELE_ESTIMATE;
+        }
+        final StringBuilder s = new StringBuilder((int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        try {
+            join(s, eles, sep);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);   //never from StringBuilder
+        }
+        return s.toString();
+    }
+
+    private static final int JOIN_ELE_ESTIMATE = 4;
+
+    /**
+     * Join elements separated by sep, appending directly to out (e.g.,
+     * Writer), so large results need not be materialized.
+     * As with join(Collection,String), separator is added only after
+     * non-empty output.
+     *
+     * @param <T> element type (must has toString() method).
+     * @param out where to append.
+     * @param eles elements to join.
+     * @param sep separator.
+     * @return out.
+     * @throws IOException from out.
+     */
+    public static <T> Appendable join(final Appendable out, final Iterable<T> eles, final String sep) throws IOException {
         if (null != eles) {
+            boolean empty = true;
             for (T ele : eles) {
-                if (0 < s.length()) {
-                    s.append(sep);
+                final CharSequence cs = (ele instanceof CharSequence) ? (CharSequence) ele : ele.toString();
+                if (!empty) {
+                    out.append(sep);
                 }
-                s.append(ele.toString());
+                out.append(cs);
+                empty &= (0 == cs.length());
             }
         }
-        return s.toString();       
+        return out;
     }
     
     public static String toString(StringBuilder s) {
@@ -409,20 +815,23 @@ public class Util {
     }
 
     /**
-     * Return union of 2 lists.
+     * Return union of 2 lists: l1 (in order), followed by elements of l2
+     * (in order).
      *
      * @param <T>
      * @param l1 first list.
      * @param l2 second list.
-     * @param allowDups true to allow duplicates.
+     * @param allowDups true to allow duplicates, else elements of l2 already
+     * in union are skipped.
      * @return union of lists.
      */
     public static <T> List<T> union(final List<T> l1, final List<T> l2, boolean allowDups) {
-        LinkedList<T> u = new LinkedList<>(l1);
-        for (T e : l2) {
-            if (allowDups || (0 > u.indexOf(e))) {
-                u.add(e);
-            }
+        List<T> u = new ArrayList<>(l1.size() + l2.size());
+        u.addAll(l1);
+        if (allowDups) {
+            u.addAll(l2);
+        } else {
+            addAllNoDups(u, l2);
         }
         return u;
     }
@@ -497,10 +906,6 @@ public class Util {
     }
 
     public static <T> Collection<T> replicate(T item, int ntimes) {
-        List<T> items = new LinkedList<>();
-        for (int i = 0; i < ntimes; i++) {
-            items.add(item);
-        }
-        return items;
+        return new ArrayList<>(Collections.nCopies(ntimes, item));
     }
 }
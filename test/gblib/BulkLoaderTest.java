@@ -0,0 +1,193 @@
+package gblib;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author gburdell
+ */
+public class BulkLoaderTest {
+
+    @Test
+    public void testSplit() {
+        assertEquals(Arrays.asList("a", "", "c"), BulkLoader.split("a,,c", ','));
+        assertEquals(Arrays.asList("a,b", "say \"hi\"", ""), BulkLoader.split("\"a,b\",\"say \"\"hi\"\"\",", ','));
+        assertEquals(Arrays.asList("1", "2.5", "x y"), BulkLoader.split("1\t2.5\tx y", '\t'));
+    }
+
+    static final int N_COL = 3; //insert position of N (ID excluded)
+    static final String TS = "2017-02-26 15:03:52 -0800";
+
+    /**
+     * Stand-in database with table T (ID, NAME, WHEN, N) and data file.
+     */
+    static class Fixture implements AutoCloseable {
+
+        Fixture(final int nRows) throws IOException, SQLException {
+            m_dir = Files.createTempDirectory("bulk");
+            final Path schema = Files.write(m_dir.resolve("schema.tsv"), Arrays.asList(
+                    "T\tID\tINTEGER", "T\tNAME\tVARCHAR", "T\tWHEN\tTIMESTAMP", "T\tN\tINTEGER"));
+            m_model = new Model("T", SchemaCache.get(m_source, schema));
+            final List<String> lines = new ArrayList<>();
+            lines.add("NAME,WHEN,N");
+            for (int i = 1; i <= nRows; i++) {
+                lines.add("name" + i + "," + TS + "," + i);
+            }
+            m_data = Files.write(m_dir.resolve("data.csv"), lines);
+            m_checkpoint = m_dir.resolve("data.ckpt");
+        }
+
+        BulkLoader loader() {
+            return BulkLoader.create(m_model, m_source).setChunkSize(10).setWriters(2).setParsers(2)
+                    .setCheckpoint(m_checkpoint);
+        }
+
+        Set<Long> loadedN() {
+            final Set<Long> ns = new HashSet<>();
+            synchronized (m_db.m_committed) {
+                for (Map<Integer, Object> row : m_db.m_committed) {
+                    ns.add((Long) row.get(N_COL));
+                }
+            }
+            return ns;
+        }
+
+        @Override
+        public void close() throws IOException {
+            SchemaCache.invalidate(m_source);
+            for (String f : new String[]{"schema.tsv", "data.csv", "data.ckpt"}) {
+                Files.deleteIfExists(m_dir.resolve(f));
+            }
+            Files.delete(m_dir);
+        }
+
+        final FakeJdbc.Db m_db = new FakeJdbc.Db();
+        final Model.IConnection m_source = m_db.source();
+        final Path m_dir, m_data, m_checkpoint;
+        final Model m_model;
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        try (Fixture fx = new Fixture(95)) {
+            final BulkLoader loader = fx.loader();
+            assertEquals(95, loader.load(fx.m_data));
+            assertEquals(95, loader.getRowCount());
+            assertTrue(0.0 < loader.getRowsPerSecond());
+            assertEquals(95, fx.m_db.m_committed.size());
+            assertEquals(95, fx.loadedN().size());
+            assertEquals(10, fx.m_db.m_executes.get());
+            final Map<Integer, Object> row = fx.m_db.m_committed.get(0);
+            assertEquals(Model.toTimestamp(TS), (Timestamp) row.get(2));
+            assertFalse(Files.exists(fx.m_checkpoint));
+        }
+    }
+
+    @Test
+    public void testResumeAfterFailure() throws Exception {
+        try (Fixture fx = new Fixture(100)) {
+            //fail (once) in middle of load
+            fx.m_db.m_failOn = row -> Long.valueOf(55).equals(row.get(N_COL));
+            try {
+                fx.loader().load(fx.m_data);
+                fail("expected SQLException");
+            } catch (SQLException ex) {
+                assertTrue(ex.getMessage().startsWith("failed"));
+            }
+            assertTrue(Files.exists(fx.m_checkpoint));
+            final long skip = Long.parseLong(new String(Files.readAllBytes(fx.m_checkpoint)).trim());
+            //checkpoint: whole chunks, none at or beyond failed chunk
+            assertEquals(0, skip % 10);
+            assertTrue(skip <= 50);
+            assertFalse(fx.loadedN().contains(55L));
+            fx.m_db.m_failOn = row -> false;
+            final long loaded = fx.loader().load(fx.m_data);
+            assertEquals(100 - skip, loaded);
+            final Set<Long> ns = fx.loadedN();
+            assertEquals(100, ns.size());
+            assertFalse(Files.exists(fx.m_checkpoint));
+        }
+    }
+
+    @Test
+    public void testParseError() throws Exception {
+        try (Fixture fx = new Fixture(50)) {
+            final List<String> lines = Files.readAllLines(fx.m_data);
+            lines.set(25, "bad," + "not a time" + ",25");
+            Files.write(fx.m_data, lines);
+            try {
+                fx.loader().load(fx.m_data);
+                fail("expected IOException");
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("not a time"));
+            }
+            assertFalse(fx.loadedN().contains(25L));
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        try (Fixture fx = new Fixture(200)) {
+            //slow writers, single pending chunk: reader must wait, not fail
+            fx.m_db.m_delayMillis = 5;
+            assertEquals(200, fx.loader().setMaxPendingChunks(1).setWriters(1).load(fx.m_data));
+            assertEquals(200, fx.loadedN().size());
+            //writer dies while reader blocked on full queue: load must fail, not hang
+            fx.m_db.m_committed.clear();
+            fx.m_db.m_failOn = row -> true;
+            try {
+                fx.loader().setMaxPendingChunks(1).setWriters(1).load(fx.m_data);
+                fail("expected SQLException");
+            } catch (SQLException ex) {
+                assertTrue(fx.m_db.m_committed.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testIdColumn() throws Exception {
+        try (Fixture fx = new Fixture(0)) {
+            //export of same table: ID (in any position) is ignored
+            Files.write(fx.m_data, Arrays.asList("N,ID,NAME,WHEN", "7,1,a," + TS, "8,2,b," + TS));
+            assertEquals(2, fx.loader().load(fx.m_data));
+            assertEquals(new HashSet<>(Arrays.asList(7L, 8L)), fx.loadedN());
+        }
+    }
+
+    /**
+     * Load data (header and rows) which must fail with IOException.
+     */
+    private static void loadInvalid(final String expect, final String... lines) throws Exception {
+        try (Fixture fx = new Fixture(0)) {
+            Files.write(fx.m_data, Arrays.asList(lines));
+            try {
+                fx.loader().load(fx.m_data);
+                fail("expected IOException");
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains(expect));
+            }
+            assertTrue(fx.m_db.m_prepared.isEmpty());
+        }
+    }
+
+    @Test
+    public void testInvalidHeader() throws Exception {
+        loadInvalid("unknown column 'X'", "NAME,WHEN,N,X", "a," + TS + ",1,2");
+        loadInvalid("missing column 'N'", "NAME,WHEN", "a," + TS);
+        loadInvalid("duplicate column 'name'", "NAME,WHEN,N,name", "a," + TS + ",1,a");
+        loadInvalid("duplicate column 'ID'", "ID,NAME,WHEN,N,ID", "1,a," + TS + ",1,1");
+        loadInvalid("empty file");
+    }
+}
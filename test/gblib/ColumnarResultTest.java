@@ -0,0 +1,80 @@
+package gblib;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Exercise columnar copy against stand-in result set (no database needed).
+ *
+ * @author gburdell
+ */
+public class ColumnarResultTest {
+
+    static final String LABELS[] = {"ID", "NAME", "FLAG", "SCORE", "WHEN"};
+    static final int TYPES[] = {Types.BIGINT, Types.VARCHAR, Types.BIT, Types.DOUBLE, Types.TIMESTAMP};
+
+    @Test
+    public void testRead() throws SQLException {
+        final int n = 100;    //past initial capacity: exercise growth
+        final Object rows[][] = new Object[n][];
+        for (int i = 0; i < n; i++) {
+            rows[i] = new Object[]{
+                (long) i,
+                (0 == i % 10) ? null : ("name" + (i % 3)),
+                (0 == i % 2),
+                (0 == i % 7) ? null : (i * 0.5),
+                new Timestamp(1000L * i)
+            };
+        }
+        final ColumnarResult result = ColumnarResult.read(FakeJdbc.resultSet(LABELS, TYPES, rows));
+        assertEquals(n, result.getRowCount());
+        assertEquals(5, result.getColumnCount());
+        assertEquals(2, result.getColumn("name"));
+        assertEquals(0, result.getColumn("nosuch"));
+        assertEquals(Types.VARCHAR, result.getType(2));
+        assertEquals(n, result.getLongs(1).length);
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, result.getLong(i, 1));
+            assertEquals((0 == i % 2) ? 1 : 0, result.getLong(i, 3));
+            assertEquals(1000L * i, result.getEpochMillis(i, 5));
+            if (0 == i % 10) {
+                assertTrue(result.isNull(i, 2));
+                assertNull(result.getString(i, 2));
+                assertEquals(-1, result.getCodes(2)[i]);
+            } else {
+                assertEquals("name" + (i % 3), result.getString(i, 2));
+            }
+            if (0 == i % 7) {
+                assertTrue(result.isNull(i, 4));
+            } else {
+                assertFalse(result.isNull(i, 4));
+                assertEquals(i * 0.5, result.getDouble(i, 4), 0.0);
+            }
+        }
+        //dictionary: first-seen order
+        assertEquals(Arrays.asList("name1", "name2", "name0"), result.getDictionary(2));
+        assertEquals(0, result.getCodes(2)[1]);
+        assertEquals(0, result.getCodes(2)[4]);
+    }
+
+    @Test
+    public void testEmpty() throws SQLException {
+        final ColumnarResult result = ColumnarResult.read(FakeJdbc.resultSet(LABELS, TYPES, new Object[0][]));
+        assertEquals(0, result.getRowCount());
+        assertTrue(result.getDictionary(2).isEmpty());
+    }
+
+    @Test
+    public void testUnsupported() {
+        try {
+            ColumnarResult.read(FakeJdbc.resultSet(new String[]{"B"}, new int[]{Types.BLOB}, new Object[0][]));
+            fail("expected SQLException");
+        } catch (SQLException ex) {
+            assertTrue(ex.getMessage().startsWith("B:"));
+        }
+    }
+}
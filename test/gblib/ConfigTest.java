@@ -1,5 +1,14 @@
 package gblib;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -19,4 +28,95 @@ public class ConfigTest {
         int sz = cfg.size();
     }
     
+    @Test
+    public void testSnapshot() {
+        final Config cfg = Config.create()
+                .add("k1 v1")
+                .add("k2 *I1234")
+                .add("k3 *Btrue")
+                .add(new String[]{"k4 *D-123.456e09", "k5 *Bfalse"});
+        final Config.Key k1 = Config.key("k1"), k2 = Config.key("k2"), k3 = Config.key("k3"),
+                k4 = Config.key("k4"), k5 = Config.key("k5"), k6 = Config.key("k6");
+        assertSame(k2, Config.key("k2"));
+        final Config.Snapshot snap = cfg.snapshot();
+        cfg.add("k6 *I6");
+        assertEquals("v1", snap.getAsString(k1));
+        assertEquals(1234, snap.getInt(k2));
+        assertEquals(1234.0, snap.getDouble(k2), 0.0);
+        assertTrue(snap.isTrue(k3));
+        assertFalse(snap.isTrue(k5));
+        assertTrue(snap.hasKey(k5));
+        assertEquals(-123.456e09, snap.getDouble(k4), 0.0);
+        assertFalse(snap.hasKey(k6));
+        assertFalse(snap.isTrue(k6));
+        assertEquals(7, snap.getInt(k6, 7));
+        assertEquals(6, cfg.snapshot().getInt(k6));
+        try {
+            snap.getInt(k1);
+            fail("expected ClassCastException");
+        } catch (ClassCastException ex) {
+            //expected
+        }
+    }
+    
+    @Test
+    public void testReload() throws Exception {
+        final Path file = Files.createTempFile("cfg", ".txt");
+        final Config.Key size = Config.key("bufSize"), lvl = Config.key("lvl");
+        try {
+            Files.write(file, Arrays.asList("# tuning", "bufSize *I1024", "", "lvl 3"));
+            try (ReloadableConfig cfg = ReloadableConfig.create(file)) {
+                assertEquals(1024, cfg.get().getInt(size));
+                assertEquals("3", cfg.get().getAsString(lvl));
+                final CountDownLatch reloaded = new CountDownLatch(1);
+                cfg.setOnReload((snap) -> {
+                    if (4096 == snap.getInt(size, 0)) {
+                        reloaded.countDown();
+                    }
+                }).start();
+                final Config.Snapshot before = cfg.get();
+                Files.write(file, Arrays.asList("bufSize *I4096"));
+                assertTrue(reloaded.await(30, TimeUnit.SECONDS));
+                assertEquals(4096, cfg.get().getInt(size));
+                assertFalse(cfg.get().hasKey(lvl));
+                assertEquals(1024, before.getInt(size));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    @Test
+    public void testReloadInvalid() throws Exception {
+        final Path file = Files.createTempFile("cfg", ".txt");
+        final Config.Key size = Config.key("bufSize");
+        try {
+            Files.write(file, Arrays.asList("bufSize *I1024"));
+            try (ReloadableConfig cfg = ReloadableConfig.create(file)) {
+                final BlockingQueue<Exception> errors = new LinkedBlockingQueue<>();
+                cfg.setOnError(errors::add).start();
+                final Config.Snapshot before = cfg.get();
+                //replace atomically: watcher must not see a truncated file
+                final Path tmp = Files.write(file.resolveSibling(file.getFileName() + ".tmp"),
+                        Arrays.asList("# half written", "bufSize"));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                final Exception ex = errors.poll(30, TimeUnit.SECONDS);
+                assertNotNull(ex);
+                assertTrue(ex instanceof IOException);
+                assertTrue(ex.getMessage(), ex.getMessage().contains(":2:"));
+                assertSame(before, cfg.get());
+                assertEquals(1024, cfg.get().getInt(size));
+            }
+            Files.write(file, Arrays.asList("bufSize *Ixyz"));
+            try {
+                Config.load(file);
+                fail("expected IOException");
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains(":1:"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
 }
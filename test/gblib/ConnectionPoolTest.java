@@ -0,0 +1,198 @@
+package gblib;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Exercise pool against stand-in connections (no database needed).
+ *
+ * @author gburdell
+ */
+public class ConnectionPoolTest {
+
+    final AtomicInteger m_opened = new AtomicInteger();
+    final AtomicInteger m_closed = new AtomicInteger();
+    final AtomicInteger m_prepared = new AtomicInteger();
+
+    Connection fakeConnection() {
+        m_opened.incrementAndGet();
+        final boolean isClosed[] = new boolean[]{false};
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            isClosed[0] = true;
+                            m_closed.incrementAndGet();
+                            return null;
+                        case "isClosed":
+                            return isClosed[0];
+                        case "isValid":
+                            return !isClosed[0];
+                        case "getAutoCommit":
+                            return true;
+                        case "prepareStatement":
+                            m_prepared.incrementAndGet();
+                            return fakeStatement();
+                    }
+                    return null;
+                });
+    }
+
+    static PreparedStatement fakeStatement() {
+        final boolean isClosed[] = new boolean[]{false};
+        return (PreparedStatement) Proxy.newProxyInstance(ConnectionPoolTest.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            isClosed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return isClosed[0];
+                    }
+                    return null;
+                });
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        try (ConnectionPool pool = ConnectionPool.create(this::fakeConnection, 2)) {
+            try (Connection conn = pool.getConnection()) {
+                assertFalse(conn.isClosed());
+                assertEquals(1, pool.getActiveCount());
+            }
+            assertEquals(0, pool.getActiveCount());
+            assertEquals(1, pool.getIdleCount());
+            try (Connection c1 = pool.getConnection(); Connection c2 = pool.getConnection()) {
+                assertNotSame(c1, c2);
+                assertEquals(2, pool.getActiveCount());
+            }
+            assertEquals(2, m_opened.get());
+            assertEquals(0, m_closed.get());
+        }
+        assertEquals(2, m_closed.get());
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        try (ConnectionPool pool = ConnectionPool.create(this::fakeConnection, 1).setMaxWaitMillis(10)) {
+            try (Connection conn = pool.getConnection()) {
+                assertFalse(conn.isClosed());
+                try {
+                    pool.getConnection();
+                    fail("expected timeout");
+                } catch (Model.ModelException ex) {
+                    assertTrue(true);
+                }
+            }
+            pool.getConnection().close();
+        }
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        try (ConnectionPool pool = ConnectionPool.create(this::fakeConnection, 2).setMaxIdleMillis(1)) {
+            pool.getConnection().close();
+            Thread.sleep(20);
+            assertEquals(1, pool.evictIdle());
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(1, m_closed.get());
+        }
+    }
+
+    @Test
+    public void testStatementCache() throws Exception {
+        try (ConnectionPool pool = ConnectionPool.create(this::fakeConnection, 1).setStatementCacheSize(1)) {
+            final String sql = "SELECT 1";
+            try (Connection conn = pool.getConnection()) {
+                PreparedStatement s1 = conn.prepareStatement(sql);
+                s1.close();
+                assertFalse(s1.isClosed());
+                assertSame(s1, conn.prepareStatement(sql));
+                assertNotSame(s1, conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+                //evicted (cache size 1), but still in use: closed on close()
+                assertFalse(s1.isClosed());
+                s1.close();
+                assertTrue(s1.isClosed());
+            }
+            try (Connection conn = pool.getConnection()) {
+                conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            }
+            assertEquals(2, m_prepared.get());
+        }
+    }
+
+    @Test
+    public void testLeakedEvictedStatement() throws Exception {
+        try (ConnectionPool pool = ConnectionPool.create(this::fakeConnection, 1).setStatementCacheSize(1)) {
+            final PreparedStatement s1;
+            try (Connection conn = pool.getConnection()) {
+                s1 = conn.prepareStatement("SELECT 1");
+                //evicts s1 while in use; s1 is never closed by user
+                conn.prepareStatement("SELECT 2").close();
+                assertFalse(s1.isClosed());
+            }
+            assertTrue(s1.isClosed());
+        }
+    }
+
+    @Test
+    public void testStaleHandle() throws Exception {
+        try (ConnectionPool pool = ConnectionPool.create(this::fakeConnection, 1).setMaxWaitMillis(10)) {
+            final Connection a = pool.getConnection();
+            a.close();
+            final Connection b = pool.getConnection();
+            //legal no-op: must not return b's (same physical) connection
+            a.close();
+            assertTrue(a.isClosed());
+            assertFalse(b.isClosed());
+            assertEquals(1, pool.getActiveCount());
+            try {
+                a.prepareStatement("SELECT 1");
+                fail("expected SQLException");
+            } catch (SQLException ex) {
+                assertTrue(true);
+            }
+            try {
+                pool.getConnection();
+                fail("expected timeout");
+            } catch (Model.ModelException ex) {
+                assertTrue(true);
+            }
+            b.prepareStatement("SELECT 1");
+            b.close();
+            assertEquals(0, pool.getActiveCount());
+            assertEquals(1, m_opened.get());
+        }
+    }
+
+    @Test
+    public void testBusyStatement() throws Exception {
+        try (ConnectionPool pool = ConnectionPool.create(this::fakeConnection, 1)) {
+            final String sql = "SELECT 1";
+            try (Connection conn = pool.getConnection()) {
+                final PreparedStatement s1 = conn.prepareStatement(sql);
+                //s1 still in use: must get a distinct statement
+                final PreparedStatement s2 = conn.prepareStatement(sql);
+                assertNotSame(s1, s2);
+                assertEquals(2, m_prepared.get());
+                s2.close();
+                assertTrue(s2.isClosed());  //uncached: really closed
+                assertFalse(s1.isClosed());
+                s1.close();
+                assertSame(s1, conn.prepareStatement(sql));
+                assertEquals(2, m_prepared.get());
+            }
+            //released on return to pool
+            try (Connection conn = pool.getConnection()) {
+                conn.prepareStatement(sql);
+                assertEquals(2, m_prepared.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package gblib;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Stand-in JDBC objects (no database needed).
+ *
+ * @author gburdell
+ */
+class FakeJdbc {
+
+    /**
+     * Create forward-only result set over rows.
+     *
+     * @param labels column labels.
+     * @param types column sql.Types.
+     * @param rows row values (null for SQL NULL).
+     * @return result set.
+     */
+    static ResultSet resultSet(final String labels[], final int types[], final Object rows[][]) {
+        final ResultSetMetaData md = (ResultSetMetaData) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return labels.length;
+                        case "getColumnType":
+                            return types[(Integer) args[0] - 1];
+                        case "getColumnLabel":
+                        case "getColumnName":
+                            return labels[(Integer) args[0] - 1];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        final int state[] = new int[]{-1, 0, 0}; //row, wasNull, isClosed
+        return (ResultSet) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMetaData":
+                            return md;
+                        case "next":
+                            return ++state[0] < rows.length;
+                        case "first":
+                            state[0] = 0;
+                            return 0 < rows.length;
+                        case "close":
+                            state[2] = 1;
+                            return null;
+                        case "isClosed":
+                            return 0 != state[2];
+                        case "wasNull":
+                            return 0 != state[1];
+                    }
+                    if (method.getName().startsWith("get") && (1 == args.length)) {
+                        int col = 0;
+                        if (args[0] instanceof String) {
+                            while (!labels[col].equalsIgnoreCase((String) args[0])) {
+                                col++;
+                            }
+                        } else {
+                            col = (Integer) args[0] - 1;
+                        }
+                        final Object val = rows[state[0]][col];
+                        state[1] = (null == val) ? 1 : 0;
+                        return convert(method.getReturnType(), val);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Create (prepared) statement whose query returns rs.
+     *
+     * @param <T> statement type.
+     * @param type Statement or PreparedStatement.
+     * @param rs result of executeQuery.
+     * @param closed incremented on close().
+     * @return statement.
+     */
+    static <T extends Statement> T statement(final Class<T> type, final ResultSet rs, final AtomicInteger closed) {
+        return type.cast(Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "executeQuery":
+                            return rs;
+                        case "close":
+                            closed.incrementAndGet();
+                            return null;
+                        case "setFetchSize":
+                            return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+
+    /**
+     * Create connection whose createStatement returns stmt.
+     *
+     * @param stmt statement.
+     * @return connection.
+     */
+    static Connection connection(final Statement stmt) {
+        return (Connection) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("createStatement".equals(method.getName())) {
+                        return stmt;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Stand-in database: records (batched) statement executions per
+     * connection, made visible on commit. Single statement executions are
+     * delegated to m_onUpdate and m_onQuery.
+     */
+    static class Db {
+
+        /**
+         * Execute single statement.
+         */
+        interface Handler<T> {
+
+            /**
+             * Execute statement.
+             *
+             * @param sql statement.
+             * @param params parameter value by (1-based) position.
+             * @return update count or result set.
+             * @throws SQLException
+             */
+            T execute(String sql, Map<Integer, Object> params) throws SQLException;
+        }
+
+        /**
+         * Get connection source.
+         *
+         * @return connection source.
+         */
+        Model.IConnection source() {
+            return this::connection;
+        }
+
+        private Connection connection() {
+            final List<Map<Integer, Object>> uncommitted = new ArrayList<>();
+            final boolean autoCommit[] = new boolean[]{true};
+            return (Connection) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "prepareStatement":
+                                m_prepared.add((String) args[0]);
+                                return preparedStatement((String) args[0], uncommitted, autoCommit);
+                            case "createStatement":
+                                return createStatement();
+                            case "setAutoCommit":
+                                autoCommit[0] = (Boolean) args[0];
+                                return null;
+                            case "getAutoCommit":
+                                return autoCommit[0];
+                            case "commit":
+                                m_committed.addAll(uncommitted);
+                                uncommitted.clear();
+                                return null;
+                            case "rollback":
+                                uncommitted.clear();
+                                return null;
+                            case "close":
+                                return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private Statement createStatement() {
+            return (Statement) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{Statement.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "executeQuery":
+                                return m_onQuery.execute((String) args[0], Collections.emptyMap());
+                            case "setFetchSize":
+                            case "close":
+                                return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private PreparedStatement preparedStatement(final String sql, final List<Map<Integer, Object>> uncommitted,
+                final boolean autoCommit[]) {
+            final Map<Integer, Object> params = new TreeMap<>();
+            final List<Map<Integer, Object>> batch = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        final String name = method.getName();
+                        if (name.startsWith("set") && (2 <= args.length) && (args[0] instanceof Integer)) {
+                            params.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                            return null;
+                        }
+                        switch (name) {
+                            case "clearParameters":
+                                params.clear();
+                                return null;
+                            case "addBatch":
+                                batch.add(new TreeMap<>(params));
+                                return null;
+                            case "clearBatch":
+                                batch.clear();
+                                return null;
+                            case "executeUpdate":
+                                return m_onUpdate.execute(sql, new TreeMap<>(params));
+                            case "executeQuery":
+                                return m_onQuery.execute(sql, new TreeMap<>(params));
+                            case "getGeneratedKeys":
+                                return resultSet(new String[]{"ID"}, new int[]{Types.BIGINT},
+                                        new Object[][]{{m_nextKey.incrementAndGet()}});
+                            case "executeBatch":
+                                if (0 < m_delayMillis) {
+                                    Thread.sleep(m_delayMillis);
+                                }
+                                m_executes.incrementAndGet();
+                                for (Map<Integer, Object> row : batch) {
+                                    if (m_failOn.test(row)) {
+                                        batch.clear();
+                                        throw new SQLException("failed: " + row);
+                                    }
+                                }
+                                uncommitted.addAll(batch);
+                                final int cnts[] = new int[batch.size()];
+                                Arrays.fill(cnts, 1);
+                                batch.clear();
+                                if (autoCommit[0]) {
+                                    m_committed.addAll(uncommitted);
+                                    uncommitted.clear();
+                                }
+                                return cnts;
+                            case "close":
+                                return null;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    });
+        }
+
+        /**
+         * Committed rows: parameter value by (1-based) position.
+         */
+        final List<Map<Integer, Object>> m_committed = Collections.synchronizedList(new ArrayList<>());
+        final List<String> m_prepared = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger m_executes = new AtomicInteger();
+        volatile Predicate<Map<Integer, Object>> m_failOn = row -> false;
+        volatile long m_delayMillis = 0;
+        volatile Handler<Integer> m_onUpdate = (sql, params) -> {
+            throw new UnsupportedOperationException(sql);
+        };
+        volatile Handler<ResultSet> m_onQuery = (sql, params) -> {
+            throw new UnsupportedOperationException(sql);
+        };
+        /**
+         * Last generated key (returned by getGeneratedKeys).
+         */
+        final AtomicLong m_nextKey = new AtomicLong();
+    }
+
+    private static Object convert(final Class<?> type, final Object val) {
+        if (long.class == type) {
+            return (null == val) ? 0L : toNumber(val).longValue();
+        } else if (int.class == type) {
+            return (null == val) ? 0 : toNumber(val).intValue();
+        } else if (double.class == type) {
+            return (null == val) ? 0.0 : toNumber(val).doubleValue();
+        } else if (float.class == type) {
+            return (null == val) ? 0.0f : toNumber(val).floatValue();
+        } else if (boolean.class == type) {
+            return (null != val) && ((val instanceof Boolean) ? (Boolean) val : (0 != toNumber(val).longValue()));
+        } else if (String.class == type) {
+            return (null == val) ? null : val.toString();
+        } else if (Timestamp.class == type) {
+            return (null == val) ? null : (Timestamp) val;
+        }
+        return val;
+    }
+
+    private static Number toNumber(final Object val) {
+        return (val instanceof Boolean) ? ((Boolean) val ? 1 : 0) : (Number) val;
+    }
+}
@@ -8,9 +8,13 @@ package gblib;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.junit.Test;
 import static org.junit.Assert.*;
 /**
@@ -42,6 +46,14 @@ public class JarFileTest {
         //assertTrue(JF.getClassNames().size() == JF.getClassNamesInPackage("gblib.*").size());
     }
 
+    @Test
+    public void testGetClassNamesInPackageIndexed() {
+        for (String hierName : Arrays.asList("gblib.*", "gblib.Model.*", "gblib.Model.SqlVal", "gblib.JarFile", "bogus.*")) {
+            assertEquals(JarFile.getClassNamesInPackage(hierName, JF.getClassNames()),
+                    JF.getClassNamesInPackage(hierName));
+        }
+    }
+
     @Test
     public void testGetClassNames() {
         List<String> clsNames = JF.getClassNames();
@@ -74,6 +86,60 @@ public class JarFileTest {
         }
     }
 
+    @Test
+    public void testGetStaticFieldNamesInPackage() throws Exception {
+        List<String> names = JarFile.getStaticFieldNamesInPackage("gblib.JarFile.*");
+        assertTrue(names.contains("gblib.JarFile.CLS_BY_NAME"));
+        assertEquals(Arrays.asList("gblib.MessageMgr.IMessenger.EType.eWarn"),
+                JarFile.getStaticFieldNamesInPackage("gblib.MessageMgr.IMessenger.EType.eWarn"));
+    }
+
+    @Test
+    public void testGetLazyImports() throws Exception {
+        Map<String, JarFile.ClassRef> refs = JarFile.getLazyImports(Arrays.asList("gblib.*"), Arrays.asList(JARFILE));
+        JarFile.ClassRef ref = refs.get("gblib.Pair");
+        assertNotNull(ref);
+        assertEquals(Pair.class, ref.get());
+        assertTrue(ref.isResolved());
+    }
+
+    @Test
+    public void testClasspathIndex() throws Exception {
+        JarFile.ClasspathIndex index = JarFile.ClasspathIndex.create(Arrays.asList(JARFILE, JARFILE));
+        assertEquals(JF.getClassNamesInPackage("gblib.*"), index.getClassNamesInPackage("gblib.*"));
+        Map<String, Class<?>> map = index.getImports(Arrays.asList("gblib.Pair", "gblib.Util"));
+        assertEquals(2, map.size());
+        assertEquals(Pair.class, map.get("gblib.Pair"));
+        assertTrue(index.getTimings().containsKey("load"));
+    }
+
+    @Test
+    public void testClasspathIndexUnresolvable() throws Exception {
+        //class names indexed from jar, but not loadable
+        final Path jar = Files.createTempFile("unresolvable", ".jar");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+                for (int i = 0; i < 3000; i++) {
+                    zos.putNextEntry(new ZipEntry("zz/Cls" + i + ".class"));
+                    zos.closeEntry();
+                }
+            }
+            JarFile.ClasspathIndex index = JarFile.ClasspathIndex.create(Arrays.asList(jar.toString()));
+            assertEquals(3000, index.getClassNamesInPackage("zz.*").size());
+            for (int i = 0; i < 20; i++) {
+                try {
+                    index.getImports(Arrays.asList("zz.*"));
+                    fail("expected ClassNotFoundException");
+                } catch (ClassNotFoundException ex) {
+                    assertTrue(ex.getMessage().startsWith("zz.Cls"));
+                }
+            }
+        } finally {
+            JarFile.invalidate(jar.toString());
+            Files.delete(jar);
+        }
+    }
+
      @Test
     public void testGetStaticNamesInPackage() throws Exception {
         Map<String, Field> names = JarFile.getStaticNamesInPackage("gblib.JarFile.Bogus.VAL");
@@ -0,0 +1,71 @@
+package gblib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author gburdell
+ */
+public class JarIndexCacheTest {
+
+    @Test
+    public void testReadWrite() throws Exception {
+        final Path dir = Files.createTempDirectory("jaridx");
+        try {
+            final JarIndexCache cache = new JarIndexCache(dir);
+            final String jar = "/some/lib/foo.jar";
+            final List<String> names = Arrays.asList("a.b.C", "a.b.C$Inner", "a.b.D", "a.e.F", "G");
+            assertNull(cache.read(jar, 123, 456));
+            cache.write(jar, 123, 456, names);
+            assertEquals(names, cache.read(jar, 123, 456));
+            assertNull(cache.read(jar, 124, 456)); //size changed
+            assertNull(cache.read(jar, 123, 457)); //mtime changed
+            assertNull(cache.read("/other.jar", 123, 456));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testCorruptCount() throws Exception {
+        final Path dir = Files.createTempDirectory("jaridx");
+        try {
+            final JarIndexCache cache = new JarIndexCache(dir);
+            final String jar = "/some/lib/foo.jar";
+            cache.write(jar, 123, 456, Arrays.asList("a.b.C", "a.b.D"));
+            final Path idx;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                idx = files.iterator().next();
+            }
+            final byte good[] = Files.readAllBytes(idx);
+            //count follows magic, size, mtime and path
+            final int pos = 4 + 8 + 8 + 2 + jar.length();
+            for (int n : new int[]{-1, Integer.MAX_VALUE, 3}) {
+                final byte bad[] = good.clone();
+                ByteBuffer.wrap(bad).putInt(pos, n);
+                Files.write(idx, bad);
+                assertNull(cache.read(jar, 123, 456));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void delete(final Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+}
@@ -0,0 +1,39 @@
+package gblib;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author gburdell
+ */
+public class LruCacheTest {
+
+    @Test
+    public void testBounded() {
+        final LruCache<Integer, String> cache = new LruCache<>(16);
+        for (int i = 0; i < 16; i++) {
+            cache.put(i, "v" + i);
+        }
+        assertEquals(16, cache.size());
+        assertEquals("v0", cache.get(0)); //0 now most recently used
+        cache.put(16, "v16");
+        assertTrue(cache.size() <= 16);
+        assertEquals("v0", cache.get(0));
+        assertEquals("v16", cache.get(16));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void testUnbounded() {
+        final LruCache<Integer, Integer> cache = new LruCache<>();
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(1000, cache.size());
+        assertEquals(Integer.valueOf(7), cache.remove(7));
+        assertNull(cache.get(7));
+        cache.setMaxSize(100);
+        assertTrue(cache.size() <= 100);
+    }
+}
@@ -0,0 +1,45 @@
+package gblib;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author gburdell
+ */
+public class ModelStatsTest {
+
+    @Test
+    public void testBuckets() {
+        for (long v = 0; v < 1000000; v += 7) {
+            final int ix = ModelStats.Histogram.getIndex(v);
+            assertTrue(v <= ModelStats.Histogram.getUpperBound(ix));
+            assertTrue((0 == ix) || (v > ModelStats.Histogram.getUpperBound(ix - 1)));
+        }
+        final int last = ModelStats.Histogram.getIndex(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, ModelStats.Histogram.getUpperBound(last));
+    }
+
+    @Test
+    public void testPercentile() {
+        final ModelStats.Histogram hist = new ModelStats.Histogram();
+        for (long v = 1; v <= 1000; v++) {
+            hist.record(v * 1000);
+        }
+        assertEquals(1000, hist.getCount());
+        assertEquals(1000000, hist.getMax());
+        final long p50 = hist.getPercentile(50);
+        assertTrue(Math.abs(p50 - 500000) < 500000 * 0.07);
+        final long p99 = hist.getPercentile(99);
+        assertTrue(Math.abs(p99 - 990000) < 990000 * 0.07);
+    }
+
+    @Test
+    public void testTable() {
+        final ModelStats.Table tbl = ModelStats.get("testTable");
+        tbl.record(ModelStats.Phase.BIND, ModelStats.start());
+        assertEquals(1, tbl.getHistogram(ModelStats.Phase.BIND).getCount());
+        assertSame(tbl, ModelStats.get("testTable"));
+        assertTrue(ModelStats.snapshot().containsKey("testTable"));
+    }
+}
@@ -0,0 +1,385 @@
+package gblib;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test Model (parts which do not need a database).
+ *
+ * @author gburdell
+ */
+public class ModelTest {
+
+    @Test
+    public void testParseEpochMillis() {
+        final String s = "2017-02-26 15:03:52 -0800";
+        assertEquals(OffsetDateTime.parse(s, Model.DATE_FMT).toInstant().toEpochMilli(), Model.parseEpochMillis(s));
+        final Random rand = new Random(1234);
+        for (int i = 0; i < 10000; i++) {
+            final long secs = (long) (rand.nextDouble() * 8e9) - 4000000000L;
+            final int off = (rand.nextInt(49) - 24) * 1800;
+            final String fmt = OffsetDateTime.ofInstant(Instant.ofEpochSecond(secs),
+                    java.time.ZoneOffset.ofTotalSeconds(off)).format(Model.DATE_FMT);
+            assertEquals(fmt, secs * 1000, Model.parseEpochMillis(fmt));
+        }
+    }
+
+    @Test
+    public void testToTimestamp() {
+        final Timestamp ts = Model.toTimestamp("2017-02-26 15:03:52 +0000");
+        assertEquals(Instant.parse("2017-02-26T15:03:52Z"), ts.toInstant());
+        assertEquals(ts, Model.toTimestamp(ts.getTime()));
+        assertEquals(ts, Model.toTimestamp(ts.toInstant()));
+        assertEquals(ts, Model.toTimestamp(ts.toLocalDateTime()));
+        assertNotNull(Model.toTimestamp(null));
+    }
+
+
+    static final String LABELS[] = {"ID", "NAME", "FLAG", "SCORE", "WHEN", "R"};
+    static final int TYPES[] = {Types.BIGINT, Types.VARCHAR, Types.BIT, Types.DOUBLE, Types.TIMESTAMP, Types.REAL};
+    static final Object ROWS[][] = {
+        {1L, "a", true, 1.5, new Timestamp(1000), 0.5f},
+        {2L, null, false, null, null, 1.5f},
+        {3L, "c", true, 3.5, new Timestamp(3000), 2.5f}
+    };
+
+    @Test
+    public void testRowIterator() throws SQLException {
+        final AtomicInteger closed = new AtomicInteger();
+        final PreparedStatement stmt = FakeJdbc.statement(PreparedStatement.class,
+                FakeJdbc.resultSet(LABELS, TYPES, ROWS), closed);
+        try (Model.RowIterator iter = Model.query(stmt)) {
+            assertTrue(iter.hasNext());
+            assertTrue(iter.hasNext());  //idempotent
+            Model.Row row = iter.next();
+            assertEquals(6, row.size());
+            assertEquals(Long.valueOf(1), row.get(1).asLong());
+            assertEquals("a", row.get("name").asString());
+            assertEquals(Boolean.TRUE, row.get("FLAG").asBoolean());
+            assertEquals(Double.valueOf(1.5), row.get(4).asDouble());
+            assertEquals(new Timestamp(1000), row.get(5).asTimeStamp());
+            assertEquals(Float.valueOf(0.5f), row.get(6).asFloat());
+            assertNull(row.get("nosuch"));
+            row = iter.next();
+            assertSame(row, iter.next());    //reused
+            assertEquals(Long.valueOf(3), row.get(1).asLong());
+            assertFalse(iter.hasNext());
+            try {
+                iter.next();
+                fail("expected NoSuchElementException");
+            } catch (NoSuchElementException ex) {
+                assertTrue(true);
+            }
+        }
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void testRowStream() throws SQLException {
+        final AtomicInteger closed = new AtomicInteger();
+        final Statement stmt = FakeJdbc.statement(Statement.class, FakeJdbc.resultSet(LABELS, TYPES, ROWS), closed);
+        final List<String> names;
+        try (Stream<Model.Row> rows = Model.query(FakeJdbc.connection(stmt), "SELECT *", 10).stream()) {
+            //copy out: row is reused
+            names = rows.map(row -> row.get(2).asString()).collect(Collectors.toList());
+        }
+        assertEquals(Arrays.asList("a", null, "c"), names);
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void testRowIteratorCloseFails() throws SQLException {
+        final ResultSet real = FakeJdbc.resultSet(LABELS, TYPES, ROWS);
+        final ResultSet rs = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        throw new SQLException("close failed");
+                    }
+                    return method.invoke(real, args);
+                });
+        final AtomicInteger closed = new AtomicInteger();
+        final PreparedStatement stmt = FakeJdbc.statement(PreparedStatement.class, rs, closed);
+        final Model.RowIterator iter = Model.query(stmt);
+        assertTrue(iter.hasNext());
+        try {
+            iter.close();
+            fail("expected ModelException");
+        } catch (Model.ModelException ex) {
+            assertEquals("close failed", ex.getCause().getMessage());
+        }
+        //statement closed regardless
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void testRowUnsupportedType() {
+        final AtomicInteger closed = new AtomicInteger();
+        final Statement stmt = FakeJdbc.statement(Statement.class,
+                FakeJdbc.resultSet(new String[]{"B"}, new int[]{Types.BLOB}, new Object[0][]), closed);
+        try {
+            Model.query(FakeJdbc.connection(stmt), "SELECT *", 10);
+            fail("expected SQLException");
+        } catch (SQLException ex) {
+            assertTrue(ex.getMessage().startsWith("B:"));
+        }
+        //not leaked
+        assertEquals(1, closed.get());
+    }
+
+    /**
+     * Create model of table T (ID, NAME, WHEN, N, extraCols) over stand-in
+     * database.
+     *
+     * @param extraCols additional INTEGER columns.
+     */
+    static Model model(final Model.IConnection source, final String... extraCols) throws IOException, SQLException {
+        final Path schema = Files.createTempFile("schema", ".tsv");
+        try {
+            final List<String> lines = new ArrayList<>(Arrays.asList(
+                    "T\tID\tINTEGER", "T\tNAME\tVARCHAR", "T\tWHEN\tTIMESTAMP", "T\tN\tINTEGER"));
+            for (String col : extraCols) {
+                lines.add("T\t" + col + "\tINTEGER");
+            }
+            Files.write(schema, lines);
+            return new Model("T", SchemaCache.get(source, schema));
+        } finally {
+            Files.delete(schema);
+        }
+    }
+
+    @Test
+    public void testUpsertSql() throws Exception {
+        final FakeJdbc.Db db = new FakeJdbc.Db();
+        final Model.IConnection source = db.source();
+        try (Connection conn = source.getConnection()) {
+            final Model model = model(source);
+            model.prepareUpsert(conn, Arrays.asList("NAME"), Model.UpsertDialect.ON_DUPLICATE_KEY, 10);
+            assertEquals("INSERT INTO T (NAME,WHEN,N) VALUES (?,?,?)"
+                    + " ON DUPLICATE KEY UPDATE WHEN = VALUES(WHEN), N = VALUES(N)", db.m_prepared.get(0));
+            model.prepareUpsert(conn, Arrays.asList("NAME", "WHEN"), Model.UpsertDialect.MERGE, 10);
+            assertEquals("MERGE INTO T (NAME,WHEN,N) KEY (NAME,WHEN) VALUES (?,?,?)", db.m_prepared.get(1));
+            model.prepareUpdate(conn, Arrays.asList("NAME"), Arrays.asList("WHEN", "N"), 10);
+            assertEquals("UPDATE T SET WHEN = ?, N = ? WHERE NAME = ?", db.m_prepared.get(2));
+            model.prepareUpdateById(conn, 10);
+            assertEquals("UPDATE T SET NAME = ?, WHEN = ?, N = ? WHERE ID = ?", db.m_prepared.get(3));
+        } finally {
+            SchemaCache.invalidate(source);
+        }
+    }
+
+    private static Map<String, Object> items(final String name, final long n) {
+        final Map<String, Object> items = new LinkedHashMap<>();
+        items.put("NAME", name);
+        items.put("WHEN", new Timestamp(1000));
+        items.put("N", n);
+        return items;
+    }
+
+    @Test
+    public void testInsertGetId() throws Exception {
+        final FakeJdbc.Db db = new FakeJdbc.Db();
+        final Model.IConnection source = db.source();
+        final List<Map<Integer, Object>> updates = new ArrayList<>();
+        db.m_onUpdate = (sql, params) -> {
+            updates.add(params);
+            return 1;
+        };
+        db.m_nextKey.set(41);
+        try (Connection conn = source.getConnection()) {
+            final Model model = model(source);
+            assertEquals(42, model.insertGetId(conn, items("a", 7)));
+            assertEquals("INSERT INTO T (NAME,WHEN,N) VALUES (?,?,?)", db.m_prepared.get(0));
+            assertEquals(Arrays.asList("a", new Timestamp(1000), 7L), new ArrayList<>(updates.get(0).values()));
+        } finally {
+            SchemaCache.invalidate(source);
+        }
+    }
+
+    @Test
+    public void testInsertWithId() throws Exception {
+        final FakeJdbc.Db db = new FakeJdbc.Db();
+        final Model.IConnection source = db.source();
+        final List<Map<Integer, Object>> updates = new ArrayList<>();
+        db.m_onUpdate = (sql, params) -> {
+            updates.add(params);
+            return 1;
+        };
+        try (Connection conn = source.getConnection()) {
+            final Model model = model(source);
+            try (PreparedStatement stmt = model.insert(conn, 99, items("b", 8))) {
+                assertEquals(1, stmt.executeUpdate());
+            }
+            assertEquals("INSERT INTO T (ID,NAME,WHEN,N) VALUES (?,?,?,?)", db.m_prepared.get(0));
+            assertEquals(Arrays.asList(99L, "b", new Timestamp(1000), 8L), new ArrayList<>(updates.get(0).values()));
+        } finally {
+            SchemaCache.invalidate(source);
+        }
+    }
+
+    @Test
+    public void testUpdateIfVersion() throws Exception {
+        final FakeJdbc.Db db = new FakeJdbc.Db();
+        final Model.IConnection source = db.source();
+        final long version[] = new long[]{3};
+        db.m_onUpdate = (sql, params) -> {
+            assertEquals("UPDATE T SET N = ?, VERSION = VERSION + 1 WHERE ID = ? AND VERSION = ?", sql);
+            assertEquals(Arrays.asList(5L, 1L), Arrays.asList(params.get(1), params.get(2)));
+            if (version[0] != (Long) params.get(3)) {
+                return 0;
+            }
+            version[0]++;
+            return 1;
+        };
+        try (Connection conn = source.getConnection()) {
+            final Model model = model(source, "VERSION");
+            final Map<String, Object> items = new LinkedHashMap<>();
+            items.put("N", 5L);
+            assertTrue(model.updateIfVersion(conn, 1, 3, items));
+            assertFalse(model.updateIfVersion(conn, 1, 3, items));  //stale
+            assertTrue(model.updateIfVersion(conn, 1, 4, items));
+            assertEquals(5, version[0]);
+        } finally {
+            SchemaCache.invalidate(source);
+        }
+    }
+
+    /**
+     * Stand-in sequence table (TBL_NAME, NEXT_ID) over T with MAX(ID) == 100.
+     * The UPDATE returns the row to (only) its caller, as a row lock would.
+     *
+     * @param seq NEXT_ID by TBL_NAME.
+     */
+    private static void sequenceTable(final FakeJdbc.Db db, final Map<String, Long> seq) {
+        final ThreadLocal<Long> updated = new ThreadLocal<>();
+        db.m_onUpdate = (sql, params) -> {
+            if (sql.startsWith("UPDATE SEQ SET NEXT_ID = NEXT_ID + ?")) {
+                final Long next = seq.computeIfPresent((String) params.get(2), (k, v) -> v + (Long) params.get(1));
+                updated.set(next);
+                return (null != next) ? 1 : 0;
+            } else if (sql.startsWith("INSERT INTO SEQ")) {
+                if (null != seq.putIfAbsent((String) params.get(1), (Long) params.get(2))) {
+                    throw new SQLIntegrityConstraintViolationException("duplicate key");
+                }
+                return 1;
+            }
+            throw new UnsupportedOperationException(sql);
+        };
+        db.m_onQuery = (sql, params) -> {
+            if (sql.startsWith("SELECT NEXT_ID FROM SEQ")) {
+                return FakeJdbc.resultSet(new String[]{"NEXT_ID"}, new int[]{Types.BIGINT},
+                        new Object[][]{{updated.get()}});
+            } else if (sql.equals("SELECT MAX(ID) FROM T")) {
+                return FakeJdbc.resultSet(new String[]{"MAX"}, new int[]{Types.BIGINT}, new Object[][]{{100L}});
+            }
+            throw new UnsupportedOperationException(sql);
+        };
+    }
+
+    @Test
+    public void testBlockIdAllocatorSeedRace() throws Exception {
+        final FakeJdbc.Db db = new FakeJdbc.Db();
+        final Model.IConnection source = db.source();
+        final Map<String, Long> seq = new ConcurrentHashMap<>();
+        sequenceTable(db, seq);
+        final FakeJdbc.Db.Handler<Integer> update = db.m_onUpdate;
+        final AtomicInteger updates = new AtomicInteger();
+        db.m_onUpdate = (sql, params) -> {
+            if ((1 == updates.incrementAndGet()) && sql.startsWith("UPDATE")) {
+                //another process seeds between our UPDATE and INSERT
+                final int cnt = update.execute(sql, params);
+                seq.put("T", 500L);
+                return cnt;
+            }
+            return update.execute(sql, params);
+        };
+        try {
+            final Model.BlockIdAllocator alloc = new Model.BlockIdAllocator(model(source), "SEQ", 10);
+            assertEquals(500, alloc.nextId());
+            assertEquals(501, alloc.nextId());
+            assertEquals(Long.valueOf(510), seq.get("T"));
+            //UPDATE, INSERT (duplicate key) then UPDATE again
+            assertEquals(3, updates.get());
+        } finally {
+            SchemaCache.invalidate(source);
+        }
+    }
+
+    @Test
+    public void testBlockIdAllocatorConcurrent() throws Exception {
+        final FakeJdbc.Db db = new FakeJdbc.Db();
+        final Model.IConnection source = db.source();
+        final Map<String, Long> seq = new ConcurrentHashMap<>();
+        sequenceTable(db, seq);
+        try {
+            final Model model = model(source);
+            //two allocators stand in for two processes
+            final Model.BlockIdAllocator allocs[] = {
+                new Model.BlockIdAllocator(model, "SEQ", 7),
+                new Model.BlockIdAllocator(model, "SEQ", 7)
+            };
+            final int nthreads = 8, nids = 500;
+            final Set<Long> ids = ConcurrentHashMap.newKeySet();
+            final AtomicInteger dups = new AtomicInteger();
+            final CountDownLatch go = new CountDownLatch(1);
+            final ExecutorService exec = Executors.newFixedThreadPool(nthreads);
+            try {
+                final List<Future<?>> done = new ArrayList<>();
+                for (int t = 0; t < nthreads; t++) {
+                    final Model.BlockIdAllocator alloc = allocs[t % allocs.length];
+                    done.add(exec.submit(() -> {
+                        go.await();
+                        for (int i = 0; i < nids; i++) {
+                            if (!ids.add(alloc.nextId())) {
+                                dups.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                go.countDown();
+                for (Future<?> f : done) {
+                    f.get();
+                }
+            } finally {
+                exec.shutdown();
+            }
+            assertEquals(0, dups.get());
+            assertEquals(nthreads * nids, ids.size());
+            assertTrue(101 <= Collections.min(ids));
+            assertTrue(Collections.max(ids) < seq.get("T"));
+        } finally {
+            SchemaCache.invalidate(source);
+        }
+    }
+}
@@ -1,8 +1,19 @@
 package gblib;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -29,4 +40,148 @@ public class OptionsTest {
         System.out.print(usage);
     }
 
+    @Test
+    public void testNegateAndArgFile() throws IOException {
+        Path argFile = Files.createTempFile("opts", ".args");
+        try {
+            Files.write(argFile, Arrays.asList("--no-short", "-x", "from file", "", "pos1"));
+            Options opts = Options.create().setArgFileExpansion(true)
+                    .add("-s|--short", "my description",
+                            (t) -> {
+                                m_config.put("s", t);
+                            })
+                    .add("-x|--long value", "another description",
+                            (t) -> {
+                                m_config.put("x", t);
+                            });
+            Queue<String> argv = opts.process(new String[]{"@" + argFile, "pos2"});
+            assertEquals(false, m_config.get("s"));
+            assertEquals("from file", m_config.get("x"));
+            assertEquals(Arrays.asList("pos1", "pos2"), Arrays.asList(argv.toArray()));
+        } finally {
+            Files.delete(argFile);
+        }
+    }
+
+    @Test
+    public void testArgFileExact() throws IOException {
+        Path argFile = Files.createTempFile("opts", ".args");
+        try {
+            Files.write(argFile, Arrays.asList(" lead", "trail ", "   ", "a b"));
+            Options opts = Options.create().setArgFileExpansion(true);
+            Queue<String> argv = opts.process(new String[]{"pos", "@" + argFile});
+            assertEquals(Arrays.asList("pos", " lead", "trail ", "a b"), Arrays.asList(argv.toArray()));
+        } finally {
+            Files.delete(argFile);
+        }
+    }
+
+    /**
+     * Count open file descriptors (-1 if unknown).
+     */
+    private static long openFiles() throws IOException {
+        final Path fds = Paths.get("/proc/self/fd");
+        if (!Files.isDirectory(fds)) {
+            return -1;
+        }
+        try (Stream<Path> files = Files.list(fds)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testArgFileCycle() throws IOException {
+        Path argFile1 = Files.createTempFile("opts", ".args"), argFile2 = Files.createTempFile("opts", ".args");
+        try {
+            Files.write(argFile1, Arrays.asList("a", "@" + argFile2));
+            Files.write(argFile2, Arrays.asList("b", "@" + argFile1));
+            Options opts = Options.create().setArgFileExpansion(true);
+            final long nOpen = openFiles();
+            try {
+                opts.process(new String[]{"@" + argFile1});
+                fail("expected UsageException");
+            } catch (Options.UsageException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("includes itself"));
+            }
+            assertEquals(nOpen, openFiles());
+            //same file again, but not nested: ok
+            Files.write(argFile2, Arrays.asList("b"));
+            Queue<String> argv = opts.process(new String[]{"@" + argFile2, "@" + argFile2});
+            assertEquals(Arrays.asList("b", "b"), Arrays.asList(argv.toArray()));
+        } finally {
+            Files.delete(argFile1);
+            Files.delete(argFile2);
+        }
+    }
+
+    @Test
+    public void testArgFileClosedOnError() throws IOException {
+        Path argFile = Files.createTempFile("opts", ".args");
+        try {
+            Files.write(argFile, Arrays.asList("-s", "--bad", "pos"));
+            Options opts = Options.create().setArgFileExpansion(true)
+                    .add("-s|--short", "my description", (t) -> {
+                        m_config.put("s", t);
+                    });
+            final long nOpen = openFiles();
+            try {
+                opts.process(Arrays.asList("@" + argFile.toString()).iterator());
+                fail("expected UsageException");
+            } catch (Options.UsageException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("--bad"));
+            }
+            assertEquals(nOpen, openFiles());
+            try {
+                opts.process(new String[]{"@" + argFile});
+                fail("expected UsageException");
+            } catch (Options.UsageException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("--bad"));
+            }
+            assertEquals(nOpen, openFiles());
+        } finally {
+            Files.delete(argFile);
+        }
+    }
+
+    @Test
+    public void testStreamingSource() {
+        Options opts = Options.create().add("-x|--long value", "another description",
+                (t) -> {
+                    m_config.put("x", t);
+                });
+        byte[] input = "-x\0xval\0a b\0\0c\0".getBytes(StandardCharsets.UTF_8);
+        Iterator<String> args = opts.process(Options.nulSeparated(new ByteArrayInputStream(input)));
+        assertEquals("xval", m_config.get("x"));
+        assertEquals("a b", args.next());
+        assertEquals("c", args.next());
+        assertFalse(args.hasNext());
+        assertEquals(Arrays.asList("a", "b"),
+                opts.stream(Options.split(new StringReader("a\n\nb\n"), '\n')).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSplitExact() {
+        byte[] input = " lead\0trail \0 \0cr\r\0".getBytes(StandardCharsets.UTF_8);
+        Iterator<String> args = Options.nulSeparated(new ByteArrayInputStream(input));
+        assertEquals(" lead", args.next());
+        assertEquals("trail ", args.next());
+        assertEquals(" ", args.next());
+        assertEquals("cr\r", args.next());
+        assertFalse(args.hasNext());
+        //split on bytes, then decode
+        input = new byte[]{'a', (byte) 0xc3, (byte) 0xa9, 0, (byte) 0xff, 'b', 0};
+        args = Options.nulSeparated(new ByteArrayInputStream(input));
+        assertEquals("a\u00e9", args.next());
+        assertEquals("\ufffdb", args.next());  //invalid UTF-8: replaced
+        assertFalse(args.hasNext());
+        args = Options.nulSeparated(new ByteArrayInputStream(input), StandardCharsets.ISO_8859_1);
+        assertArrayEquals(Arrays.copyOfRange(input, 0, 3), args.next().getBytes(StandardCharsets.ISO_8859_1));
+        assertArrayEquals(Arrays.copyOfRange(input, 4, 6), args.next().getBytes(StandardCharsets.ISO_8859_1));
+        assertFalse(args.hasNext());
+        args = Options.split(new StringReader(" a \r\nb\r\n\r\n"), '\n');
+        assertEquals("a", args.next());
+        assertEquals("b", args.next());
+        assertFalse(args.hasNext());
+    }
+
 }
@@ -0,0 +1,123 @@
+package gblib;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author gburdell
+ */
+public class SchemaCacheTest {
+
+    static final String LABELS[] = {"TABLE_NAME", "COLUMN_NAME", "DATA_TYPE", "ORDINAL_POSITION"};
+    static final int TYPES[] = {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER};
+    static final Object ROWS[][] = {
+        {"T", "id", "integer", 1},
+        {"T", "name", "varchar", 2},
+        {"T", "id", "integer", 1}, //distinct per schema: first wins
+        {"Other", "ID", "INTEGER", 1},
+        {"Other", "WHEN", "TIMESTAMP", 2}
+    };
+
+    /**
+     * Stand-in database answering information_schema query.
+     *
+     * @param queries incremented per query.
+     */
+    static FakeJdbc.Db db(final AtomicInteger queries) {
+        final FakeJdbc.Db db = new FakeJdbc.Db();
+        db.m_onQuery = (sql, params) -> {
+            assertTrue(sql, sql.contains("from information_schema.columns"));
+            queries.incrementAndGet();
+            return FakeJdbc.resultSet(LABELS, TYPES, ROWS);
+        };
+        return db;
+    }
+
+    static void checkSchema(final SchemaCache cache) {
+        assertEquals(Arrays.asList("T", "Other"), cache.getTableNames());
+        final Map<String, Model.PosType> cols = cache.getTable("t").getColumnInfo();
+        assertEquals(Arrays.asList("ID", "NAME"), Arrays.asList(cols.keySet().toArray()));
+        assertEquals(1, (int) cols.get("ID").v1);
+        assertEquals(Types.LONGVARCHAR, (int) cols.get("NAME").v2);
+        assertEquals(Types.TIMESTAMP, (int) cache.getTable("OTHER").getColumnInfo().get("WHEN").v2);
+        assertNull(cache.getTable("nosuch"));
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        final AtomicInteger queries = new AtomicInteger();
+        final Model.IConnection source = db(queries).source();
+        try {
+            final SchemaCache cache = SchemaCache.get(source);
+            assertEquals(1, queries.get());
+            checkSchema(cache);
+            //shared per source: no more queries
+            assertSame(cache, SchemaCache.get(source));
+            new Model("T", cache);
+            new Model("Other", cache);
+            assertEquals(1, queries.get());
+            //other source: own query
+            final AtomicInteger otherQueries = new AtomicInteger();
+            final Model.IConnection other = db(otherQueries).source();
+            try {
+                assertNotSame(cache, SchemaCache.get(other));
+                assertEquals(1, otherQueries.get());
+            } finally {
+                SchemaCache.invalidate(other);
+            }
+            assertEquals(1, queries.get());
+            //invalidate: next get reloads
+            SchemaCache.invalidate(source);
+            final SchemaCache reloaded = SchemaCache.get(source);
+            assertNotSame(cache, reloaded);
+            assertEquals(2, queries.get());
+            checkSchema(reloaded);
+        } finally {
+            SchemaCache.invalidate(source);
+        }
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        final AtomicInteger queries = new AtomicInteger();
+        final Model.IConnection source = db(queries).source();
+        final Path dir = Files.createTempDirectory("schema");
+        final Path file = dir.resolve("schema.tsv");
+        try {
+            //no file: refresh and save
+            checkSchema(SchemaCache.get(source, file));
+            assertEquals(1, queries.get());
+            assertTrue(Files.exists(file));
+            SchemaCache.invalidate(source);
+            //warm start from file: no query
+            final SchemaCache cache = SchemaCache.get(source, file);
+            assertEquals(1, queries.get());
+            checkSchema(cache);
+            //reload from database
+            cache.refresh();
+            assertEquals(2, queries.get());
+            checkSchema(cache);
+            //invalid file
+            Files.write(file, Arrays.asList("T\tID"));
+            try {
+                cache.load(file);
+                fail("expected IOException");
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("invalid line"));
+            }
+            checkSchema(cache);
+        } finally {
+            SchemaCache.invalidate(source);
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+}
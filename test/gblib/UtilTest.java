@@ -0,0 +1,201 @@
+package gblib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author gburdell
+ */
+public class UtilTest {
+
+    @Test
+    public void testToString() throws IOException {
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            s.append("line ").append(i).append(" \u00e9\u20ac\n");
+        }
+        final String expect = s.toString();
+        final byte data[] = expect.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expect, Util.toString(new ByteArrayInputStream(data)));
+        assertEquals(expect, Util.toString(new ByteArrayInputStream(data), 7));
+        assertEquals(expect, Util.toStringExact(new ByteArrayInputStream(data), data.length));
+        assertEquals(expect, Util.toCharSequence(new ByteArrayInputStream(data)).toString());
+        assertEquals("", Util.toString(new ByteArrayInputStream(new byte[0])));
+        try {
+            Util.toStringExact(new ByteArrayInputStream(data), data.length + 1);
+            fail("expected EOFException");
+        } catch (EOFException ex) {
+            //expected
+        }
+        try {
+            Util.toStringExact(new ByteArrayInputStream(data), 1L << 31);
+            fail("expected IOException");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains(String.valueOf(1L << 31)));
+        }
+    }
+
+    @Test
+    public void testStreamCopy() throws IOException {
+        final byte data[] = new byte[1000003];
+        new Random(1).nextBytes(data);
+        final Path src = Files.createTempFile("copy", ".src"), dest = Files.createTempFile("copy", ".dest");
+        try {
+            Files.write(src, data);
+            final long last[] = {0};
+            //file to file: transferTo
+            try (FileInputStream from = new FileInputStream(src.toFile());
+                    FileOutputStream to = new FileOutputStream(dest.toFile())) {
+                assertEquals(data.length, Util.streamCopy(from, to, (n, t) -> last[0] = n));
+            }
+            assertEquals(data.length, last[0]);
+            assertArrayEquals(data, Files.readAllBytes(dest));
+            //stream to file channel: transferFrom
+            try (FileChannel to = FileChannel.open(dest, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                to.write(ByteBuffer.wrap(data, 0, 10));
+                assertEquals(data.length, Util.channelCopy(Channels.newChannel(new ByteArrayInputStream(data)), to));
+            }
+            final byte data2[] = Files.readAllBytes(dest);
+            assertEquals(data.length + 10, data2.length);
+            assertArrayEquals(data, Arrays.copyOfRange(data2, 10, data2.length));
+            //stream to stream
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(data.length, Util.streamCopy(new BufferedInputStream(new ByteArrayInputStream(data)),
+                    new BufferedOutputStream(out)));
+            assertArrayEquals(data, out.toByteArray());
+        } finally {
+            Files.delete(src);
+            Files.delete(dest);
+        }
+    }
+
+    @Test
+    public void testStreamCopySocket() throws Exception {
+        final byte data[] = new byte[1000003];
+        new Random(2).nextBytes(data);
+        final Path src = Files.createTempFile("copy", ".src"), dest = Files.createTempFile("copy", ".dest");
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            Files.write(src, data);
+            //plain socket stream to file stream: buffered copy
+            try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                final Future<?> sent = exec.submit(() -> {
+                    try (Socket peer = server.accept()) {
+                        peer.getOutputStream().write(data);
+                    }
+                    return null;
+                });
+                try (Socket sock = new Socket(server.getInetAddress(), server.getLocalPort());
+                        FileOutputStream to = new FileOutputStream(dest.toFile())) {
+                    assertEquals(data.length, Util.streamCopy(sock.getInputStream(), to, null));
+                }
+                sent.get();
+            }
+            assertArrayEquals(data, Files.readAllBytes(dest));
+            //file stream to socket channel (sendfile), then socket channel to file stream
+            try (ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                final Future<?> sent = exec.submit(() -> {
+                    try (SocketChannel peer = server.accept();
+                            FileInputStream from = new FileInputStream(src.toFile())) {
+                        assertEquals(data.length, Util.streamCopy(from, peer.socket(), null));
+                    }
+                    return null;
+                });
+                try (SocketChannel sock = SocketChannel.open(server.getLocalAddress());
+                        FileOutputStream to = new FileOutputStream(dest.toFile())) {
+                    assertEquals(data.length, Util.streamCopy(sock.socket(), to, null));
+                }
+                sent.get();
+            }
+            assertArrayEquals(data, Files.readAllBytes(dest));
+        } finally {
+            exec.shutdown();
+            Files.delete(src);
+            Files.delete(dest);
+        }
+    }
+
+    @Test
+    public void testUnion() {
+        final List<String> l1 = Arrays.asList("a", "b", "a", null);
+        final List<String> l2 = Arrays.asList("c", "a", "c", null, "d");
+        assertEquals(Arrays.asList("a", "b", "a", null, "c", "d"), Util.union(l1, l2));
+        assertEquals(Arrays.asList("a", "b", "a", null, "c", "a", "c", null, "d"), Util.union(l1, l2, true));
+        final List<String> to = new ArrayList<>(l1);
+        Util.addAllNoDups(to, l2);
+        assertEquals(Arrays.asList("a", "b", "a", null, "c", "d"), to);
+    }
+
+    @Test
+    public void testReplicate() {
+        assertEquals(Arrays.asList("?", "?", "?"), Util.replicate("?", 3));
+        assertEquals("?,?", Util.toCSV(Util.replicate("?", 2)));
+        assertTrue(Util.replicate("?", 0).isEmpty());
+        assertTrue(Util.emptyUnmodifiableList().isEmpty());
+    }
+
+    @Test
+    public void testJoin() throws IOException {
+        assertEquals("", Util.join(null, ","));
+        assertEquals("", Util.join(new ArrayList<String>(), ","));
+        assertEquals("a, 1, b", Util.join(Arrays.asList("a", 1, new StringBuilder("b")), ", "));
+        assertEquals("a,,b", Util.toCSV(Arrays.asList("a", "", "b")));
+        //separator only after non-empty output
+        assertEquals("a", Util.toCSV(Arrays.asList("", "a")));
+        final StringWriter out = new StringWriter();
+        Util.toCSV(out, Arrays.asList(1, 2, 3));
+        assertEquals("1,2,3", out.toString());
+    }
+
+    @Test
+    public void testEscape() {
+        final String plain = "nothing to escape";
+        assertSame(plain, Util.escape(plain));
+        assertSame(plain, Util.unescapeAll(plain));
+        assertSame(plain, Util.escapeNewlines(plain));
+        final String s = "a\nb\tc\rd\\e'f\"g\n";
+        final String esc = "a\\nb\\tc\\rd\\\\e\\'f\\\"g\\n";
+        assertEquals(esc, Util.escape(s));
+        assertEquals(esc, Util.escape(s, new StringBuilder()).toString());
+        assertEquals(s, Util.unescapeAll(esc));
+        assertEquals("x\\ny\\n", Util.escapeNewlines("x\ny\n"));
+        assertEquals("c:\\dir\\n", Util.escapeNewlines("c:\\dir\n"));
+        assertEquals("\\t", Util.escape('\t'));
+        assertEquals("x", Util.escape('x'));
+        assertEquals('\\', Util.unescape("\\\\"));
+        assertEquals('"', Util.unescape("\\\""));
+        assertEquals("\\q\\", Util.unescapeAll("\\q\\"));
+    }
+
+}